@@ -0,0 +1,58 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import biz.deinum.multitenant.aop.target.registry.impl.CircuitBreakerTargetRegistry;
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * MethodInterceptor which reports the outcome of each invocation on the
+ * target to a {@link CircuitBreakerTargetRegistry}, to be added to the proxy
+ * using the {@link ContextSwappableTargetSource}.
+ * 
+ * <pre>
+ * &lt;bean id="dataSource" class="org.springframework.aop.framework.ProxyFactoryBean"&gt;
+ *     &lt;property name="targetSource" ref="contextSwappableTargetSource"/&gt;
+ *     &lt;property name="interceptorNames" value="circuitBreakerInterceptor"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class CircuitBreakerInterceptor implements MethodInterceptor {
+
+    private final CircuitBreakerTargetRegistry<?> registry;
+
+    public CircuitBreakerInterceptor(final CircuitBreakerTargetRegistry<?> registry) {
+        super();
+        this.registry = registry;
+    }
+
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+        final String context = ContextHolder.getContext();
+        final Object target = invocation.getThis();
+        try {
+            final Object result = invocation.proceed();
+            this.registry.recordSuccess(context, target);
+            return result;
+        } catch (final Throwable ex) {
+            this.registry.recordFailure(context, target, ex);
+            throw ex;
+        }
+    }
+
+}
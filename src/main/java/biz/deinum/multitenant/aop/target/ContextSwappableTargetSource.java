@@ -15,18 +15,21 @@
  */
 package biz.deinum.multitenant.aop.target;
 
+import biz.deinum.multitenant.aop.target.registry.ReleasingTargetRegistry;
 import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantContextTargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantTargetRegistry;
 import biz.deinum.multitenant.aop.target.registry.impl.BeanFactoryTargetRegistry;
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+import biz.deinum.multitenant.core.TenantId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.TargetSource;
 import org.springframework.beans.BeansException;
-import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
-import org.springframework.core.OrderComparator;
 import org.springframework.util.Assert;
 
 import java.util.*;
@@ -66,6 +69,14 @@ public class ContextSwappableTargetSource implements TargetSource, InitializingB
     /** The ApplicationContext we are defined in */
     private ApplicationContext context;
 
+    /** Per thread, the registries which resolved the targets still to be released, innermost last */
+    private final ThreadLocal<Map<Object, Deque<ReleasingTargetRegistry<?>>>> resolvedBy = new ThreadLocal<Map<Object, Deque<ReleasingTargetRegistry<?>>>>() {
+        @Override
+        protected Map<Object, Deque<ReleasingTargetRegistry<?>>> initialValue() {
+            return new IdentityHashMap<Object, Deque<ReleasingTargetRegistry<?>>>();
+        }
+    };
+
     /**
      * Constructor for the {@link ContextSwappableTargetSource} class. It takes a 
      * Class as a parameter.
@@ -103,6 +114,7 @@ public class ContextSwappableTargetSource implements TargetSource, InitializingB
         }
 
         if (!this.targetClass.isAssignableFrom(target.getClass())) {
+            this.releaseTarget(target);
             throw new TargetLookupFailureException("The target for '" + contextName + "' is not of the required type."
                     + "Expected '" + this.targetClass.getName() + "' and got '" + target.getClass().getName() + "'");
         }
@@ -140,19 +152,106 @@ public class ContextSwappableTargetSource implements TargetSource, InitializingB
         return target;
     }
 
+    /**
+     * Ask each registry in turn, {@link TenantContextTargetRegistry} instances
+     * are asked by {@link TenantContext} and {@link TenantTargetRegistry}
+     * instances by interned {@link TenantId}, or by <code>String</code> when
+     * the tenant is not interned.
+     * 
+     * Targets which are not of the target class are skipped and the next
+     * registry is asked, so registries holding targets of several types can
+     * be shared by target sources of different types.
+     */
     protected Object resolveTarget(final String context) {
         Object target = null;
+        TenantContext tenantContext = null;
         for (final TargetRegistry<?> registry : this.registries) {
             this.logger.debug("Using '{}' to lookup '{}'.", registry, context);
-            target = registry.getTarget(context);
+            if (context != null && registry instanceof TenantContextTargetRegistry) {
+                if (tenantContext == null) {
+                    tenantContext = this.tenantContext(context);
+                }
+                target = ((TenantContextTargetRegistry<?>) registry).getTarget(tenantContext);
+            } else if (context != null && registry instanceof TenantTargetRegistry) {
+                if (tenantContext == null) {
+                    tenantContext = this.tenantContext(context);
+                }
+                final TenantId tenantId = tenantContext.getTenantId();
+                target = tenantId != null ? ((TenantTargetRegistry<?>) registry).getTarget(tenantId)
+                        : registry.getTarget(context);
+            } else {
+                target = registry.getTarget(context);
+            }
             if (target != null) {
-                break;
+                final ReleasingTargetRegistry<?> releasing = releasingRegistry(registry);
+                if (this.targetClass.isInstance(target)) {
+                    if (releasing != null) {
+                        this.track(target, releasing);
+                    }
+                    return target;
+                }
+                this.logger.debug("Skipping target of type '{}' from '{}'.", target.getClass().getName(), registry);
+                if (releasing != null) {
+                    releasing.release(target);
+                }
             }
         }
-        return target;
+        return null;
     }
 
+    private TenantContext tenantContext(final String context) {
+        final TenantContext current = ContextHolder.getTenantContext();
+        return current != null && current.getTenant().equals(context) ? current : TenantContext.of(context);
+    }
+
+    /**
+     * Hands the target back to the {@link ReleasingTargetRegistry} which
+     * resolved it, so it can track the targets in use. Other registries never
+     * see the target. The target has to be released on the thread which
+     * obtained it, as the proxies do.
+     */
     public void releaseTarget(final Object target) throws Exception {
+        final Map<Object, Deque<ReleasingTargetRegistry<?>>> resolved = this.resolvedBy.get();
+        final Deque<ReleasingTargetRegistry<?>> registries = resolved.get(target);
+        if (registries == null) {
+            return;
+        }
+        final ReleasingTargetRegistry<?> registry = registries.removeLast();
+        if (registries.isEmpty()) {
+            resolved.remove(target);
+        }
+        registry.release(target);
+    }
+
+    private void track(final Object target, final ReleasingTargetRegistry<?> registry) {
+        final Map<Object, Deque<ReleasingTargetRegistry<?>>> resolved = this.resolvedBy.get();
+        Deque<ReleasingTargetRegistry<?>> registries = resolved.get(target);
+        if (registries == null) {
+            registries = new ArrayDeque<ReleasingTargetRegistry<?>>(2);
+            resolved.put(target, registries);
+        }
+        registries.addLast(registry);
+    }
+
+    private static ReleasingTargetRegistry<?> releasingRegistry(final TargetRegistry<?> registry) {
+        if (registry instanceof ReleasingTargetRegistry
+                && ((ReleasingTargetRegistry<?>) registry).isReleaseRequired()) {
+            return (ReleasingTargetRegistry<?>) registry;
+        }
+        return null;
+    }
+
+    /**
+     * Whether {@link #releaseTarget(Object)} has to be called after each
+     * invocation, which is the case when a registry tracks the targets in use.
+     */
+    public boolean isReleaseRequired() {
+        for (final TargetRegistry<?> registry : this.registries) {
+            if (releasingRegistry(registry) != null) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public final void afterPropertiesSet() throws Exception {
@@ -167,20 +266,9 @@ public class ContextSwappableTargetSource implements TargetSource, InitializingB
         }
     }
 
-    @SuppressWarnings("unchecked")
     private void initTargetRegistries() {
         if (this.registries.isEmpty()) {
-            final Map<String, ? extends TargetRegistry> matchingBeans = BeanFactoryUtils.beansOfTypeIncludingAncestors(
-                    this.context, TargetRegistry.class, true, false);
-            if (!matchingBeans.isEmpty()) {
-                this.registries.addAll((Collection<? extends TargetRegistry<?>>) matchingBeans.values());
-                Collections.sort(this.registries, new OrderComparator());
-            } else {
-                @SuppressWarnings("rawtypes")
-                final BeanFactoryTargetRegistry<?> registry = new BeanFactoryTargetRegistry();
-                registry.setBeanFactory(this.context);
-                this.registries.add(registry);
-            }
+            this.registries.addAll(SharedTargetRegistries.discover(this.context));
         }
     }
 
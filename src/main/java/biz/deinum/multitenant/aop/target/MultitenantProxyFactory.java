@@ -0,0 +1,148 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target;
+
+import java.lang.reflect.Method;
+
+import org.springframework.aop.TargetSource;
+import org.springframework.cglib.proxy.Callback;
+import org.springframework.cglib.proxy.CallbackFilter;
+import org.springframework.cglib.proxy.Dispatcher;
+import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.MethodInterceptor;
+import org.springframework.cglib.proxy.MethodProxy;
+import org.springframework.cglib.proxy.NoOp;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates lightweight proxies for a {@link TargetSource}, without the advice
+ * chain of a Spring AOP proxy. A class implementing the interface is
+ * generated once per interface, each method of that class resolves the
+ * target and calls the same method on it directly, without reflection.
+ * 
+ * When the target source requires targets to be released, see
+ * {@link ContextSwappableTargetSource#isReleaseRequired()}, a slightly slower
+ * variant releases the target after each call. Use a
+ * <code>ProxyFactoryBean</code> instead when advice has to be applied.
+ * 
+ * <pre>
+ * DataSource dataSource = MultitenantProxyFactory.getProxy(DataSource.class, targetSource);
+ * </pre>
+ * 
+ * @see ContextSwappableTargetSource
+ */
+public abstract class MultitenantProxyFactory {
+
+    private static final CallbackFilter FILTER = new ObjectMethodsFilter();
+
+    /**
+     * Create a proxy implementing the interface which delegates every call to
+     * the current target of the target source.
+     */
+    public static <T> T getProxy(final Class<T> proxyInterface, final TargetSource targetSource) {
+        Assert.isTrue(proxyInterface.isInterface(), "Only interfaces can be proxied, got '" + proxyInterface.getName()
+                + "'");
+        final Callback delegate = requiresRelease(targetSource) ? new ReleasingInterceptor(targetSource)
+                : new TargetDispatcher(targetSource);
+        final Enhancer enhancer = new Enhancer();
+        enhancer.setClassLoader(ClassUtils.getDefaultClassLoader());
+        if (proxyInterface.getClassLoader() != null) {
+            enhancer.setClassLoader(proxyInterface.getClassLoader());
+        }
+        enhancer.setInterfaces(new Class<?>[] { proxyInterface });
+        enhancer.setCallbackFilter(FILTER);
+        enhancer.setCallbacks(new Callback[] { delegate, NoOp.INSTANCE });
+        return proxyInterface.cast(enhancer.create());
+    }
+
+    private static boolean requiresRelease(final TargetSource targetSource) {
+        if (targetSource instanceof ContextSwappableTargetSource) {
+            return ((ContextSwappableTargetSource) targetSource).isReleaseRequired();
+        }
+        return !targetSource.isStatic();
+    }
+
+    /**
+     * Resolves the target per call, the generated class invokes the method on
+     * the returned target directly.
+     */
+    private static final class TargetDispatcher implements Dispatcher {
+
+        private final TargetSource targetSource;
+
+        TargetDispatcher(final TargetSource targetSource) {
+            this.targetSource = targetSource;
+        }
+
+        public Object loadObject() throws Exception {
+            return this.targetSource.getTarget();
+        }
+    }
+
+    /**
+     * Resolves the target per call and releases it afterwards, the method is
+     * invoked through the generated <code>MethodProxy</code>, not reflection.
+     */
+    private static final class ReleasingInterceptor implements MethodInterceptor {
+
+        private final TargetSource targetSource;
+
+        ReleasingInterceptor(final TargetSource targetSource) {
+            this.targetSource = targetSource;
+        }
+
+        public Object intercept(final Object proxy, final Method method, final Object[] args,
+                final MethodProxy methodProxy) throws Throwable {
+            final Object target = this.targetSource.getTarget();
+            try {
+                return methodProxy.invoke(target, args);
+            } finally {
+                this.targetSource.releaseTarget(target);
+            }
+        }
+    }
+
+    /**
+     * Keeps <code>equals</code> and <code>hashCode</code> on the proxy itself,
+     * all other methods are delegated.
+     */
+    private static final class ObjectMethodsFilter implements CallbackFilter {
+
+        public int accept(final Method method) {
+            final String name = method.getName();
+            if (name.equals("equals") && method.getParameterTypes().length == 1
+                    && method.getParameterTypes()[0] == Object.class) {
+                return 1;
+            }
+            if (name.equals("hashCode") && method.getParameterTypes().length == 0) {
+                return 1;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof ObjectMethodsFilter;
+        }
+
+        @Override
+        public int hashCode() {
+            return ObjectMethodsFilter.class.hashCode();
+        }
+    }
+
+}
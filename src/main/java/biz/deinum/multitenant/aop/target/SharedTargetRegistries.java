@@ -0,0 +1,90 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.OrderComparator;
+
+import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.impl.BeanFactoryTargetRegistry;
+
+/**
+ * Discovers the {@link TargetRegistry} beans in the {@link ApplicationContext}
+ * once and shares the sorted list between all {@link ContextSwappableTargetSource}s
+ * configured with it, instead of each target source scanning the context on
+ * its own.
+ * 
+ * When no registries are found a {@link BeanFactoryTargetRegistry} is used.
+ * 
+ * @see ContextSwappableTargetSource#setTargetRegistries(List)
+ */
+public class SharedTargetRegistries implements ApplicationContextAware {
+
+    private ApplicationContext context;
+
+    private volatile List<TargetRegistry<?>> registries;
+
+    /**
+     * The registries of the context sorted by their order, discovered on the
+     * first call.
+     * 
+     * @return unmodifiable list of registries
+     */
+    public List<TargetRegistry<?>> getTargetRegistries() {
+        List<TargetRegistry<?>> result = this.registries;
+        if (result == null) {
+            synchronized (this) {
+                result = this.registries;
+                if (result == null) {
+                    result = Collections.unmodifiableList(discover(this.context));
+                    this.registries = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException {
+        this.context = applicationContext;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static List<TargetRegistry<?>> discover(final ApplicationContext context) {
+        final Map<String, TargetRegistry> matchingBeans = BeanFactoryUtils.beansOfTypeIncludingAncestors(context,
+                TargetRegistry.class, true, false);
+        final List<TargetRegistry<?>> result = new ArrayList<TargetRegistry<?>>();
+        if (!matchingBeans.isEmpty()) {
+            for (final TargetRegistry registry : matchingBeans.values()) {
+                result.add(registry);
+            }
+            Collections.sort(result, new OrderComparator());
+        } else {
+            final BeanFactoryTargetRegistry<?> registry = new BeanFactoryTargetRegistry();
+            registry.setBeanFactory(context);
+            result.add(registry);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target;
+
+/**
+ * Exception thrown when the target for a context is known but currently
+ * unavailable, for instance because its circuit breaker is open. Thrown
+ * immediately instead of waiting for the target to time out.
+ * 
+ * @see biz.deinum.multitenant.aop.target.registry.impl.CircuitBreakerTargetRegistry
+ */
+public class TargetUnavailableException extends TargetLookupFailureException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TargetUnavailableException(final String message) {
+        super(message);
+    }
+
+}
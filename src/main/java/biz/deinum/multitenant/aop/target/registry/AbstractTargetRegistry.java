@@ -20,11 +20,12 @@ import org.springframework.core.Ordered;
 /**
  * Generic implementation and functionality for a {@link TargetRegistry}. 
  * This class provides optional chaining of TargetRestry instances.
+ * Releasing a target is passed on to the parent registry.
  * 
  * @author Marten Deinum
  * @since 1.1
  */
-public abstract class AbstractTargetRegistry<T> implements TargetRegistry<T>, Ordered {
+public abstract class AbstractTargetRegistry<T> implements ReleasingTargetRegistry<T>, Ordered {
 
     private TargetRegistry<T> parent = null;
 
@@ -34,6 +35,10 @@ public abstract class AbstractTargetRegistry<T> implements TargetRegistry<T>, Or
         this.parent = registry;
     }
 
+    protected final TargetRegistry<T> getParentRegistry() {
+        return this.parent;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -45,6 +50,24 @@ public abstract class AbstractTargetRegistry<T> implements TargetRegistry<T>, Or
         return target;
     }
 
+    /**
+     * Whether the parent registry requires targets to be released, subclasses
+     * which track their targets override this method.
+     */
+    public boolean isReleaseRequired() {
+        return this.parent instanceof ReleasingTargetRegistry
+                && ((ReleasingTargetRegistry<T>) this.parent).isReleaseRequired();
+    }
+
+    /**
+     * Pass the target on to the parent registry.
+     */
+    public void release(final Object target) {
+        if (this.parent instanceof ReleasingTargetRegistry) {
+            ((ReleasingTargetRegistry<T>) this.parent).release(target);
+        }
+    }
+
     public int getOrder() {
         return this.order;
     }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry;
+
+/**
+ * {@link TargetRegistry} which tracks the targets it hands out, and therefore
+ * wants them back once they are no longer used. The
+ * {@link biz.deinum.multitenant.aop.target.ContextSwappableTargetSource}
+ * releases the target after each invocation on the proxy.
+ * 
+ * Registries which chain or wrap other registries implement this interface to
+ * pass the release on, see {@link AbstractTargetRegistry}.
+ */
+public interface ReleasingTargetRegistry<T> extends TargetRegistry<T> {
+
+    /**
+     * Whether targets obtained from this registry, or from the registries it
+     * delegates to, have to be released.
+     */
+    public boolean isReleaseRequired();
+
+    /**
+     * Hand back a target obtained from this registry, targets it does not
+     * track are ignored.
+     * 
+     * @param target
+     */
+    public void release(final Object target);
+
+}
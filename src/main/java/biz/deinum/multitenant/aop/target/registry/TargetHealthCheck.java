@@ -0,0 +1,35 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry;
+
+/**
+ * Checks whether a target is healthy, used to probe unavailable targets
+ * until they recover.
+ * 
+ * @see biz.deinum.multitenant.aop.target.registry.impl.CircuitBreakerTargetRegistry
+ */
+public interface TargetHealthCheck<T> {
+
+    /**
+     * Returns <code>true</code> when the target is healthy, implementations
+     * should not throw exceptions and should use a short timeout.
+     * 
+     * @param target
+     * @return
+     */
+    public boolean isHealthy(final T target);
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry;
+
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@link TargetRegistry} which can look up targets using the attributes of
+ * the {@link TenantContext}, for instance the region or shard of a tenant.
+ * The {@link biz.deinum.multitenant.aop.target.ContextSwappableTargetSource}
+ * prefers this lookup when a registry supports it.
+ */
+public interface TenantContextTargetRegistry<T> extends TargetRegistry<T> {
+
+    /**
+     * Returns the Target object for the given context, or null when none can be found.
+     * 
+     * @param context
+     * @return
+     */
+    public T getTarget(final TenantContext context);
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import biz.deinum.multitenant.aop.target.registry.AbstractTargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantContextTargetRegistry;
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * TargetRegistry which retrieves the target by the value of an attribute of
+ * the {@link TenantContext}, for instance the shard of the tenant. Tenants
+ * without the attribute, or with a value without target, are handed to the
+ * parent registry.
+ * 
+ * @see TenantContext#getAttribute(ContextAttribute)
+ */
+public class AttributeTargetRegistry<T> extends AbstractTargetRegistry<T> implements TenantContextTargetRegistry<T> {
+
+    private final ContextAttribute<?> attribute;
+
+    private volatile Map<Object, T> targets = new HashMap<Object, T>();
+
+    public AttributeTargetRegistry(final ContextAttribute<?> attribute) {
+        super();
+        this.attribute = attribute;
+    }
+
+    /**
+     * The targets keyed by attribute value.
+     */
+    public void setTargets(final Map<?, T> targets) {
+        this.targets = new HashMap<Object, T>(targets);
+    }
+
+    public T getTarget(final TenantContext context) {
+        final T target = this.lookup(context);
+        if (target == null && context != null) {
+            return this.getTarget(context.getTenant());
+        }
+        return target;
+    }
+
+    /**
+     * A plain context has no attributes to route on, use
+     * {@link #getTarget(TenantContext)} instead.
+     */
+    @Override
+    protected T getTargetInternal(final String context) {
+        return null;
+    }
+
+    private T lookup(final TenantContext context) {
+        if (context == null) {
+            return null;
+        }
+        final Object value = context.getAttribute(this.attribute);
+        return value != null ? this.targets.get(value) : null;
+    }
+
+}
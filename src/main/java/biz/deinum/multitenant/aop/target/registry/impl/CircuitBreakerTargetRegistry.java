@@ -0,0 +1,486 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.TaskScheduler;
+
+import biz.deinum.multitenant.aop.target.TargetUnavailableException;
+import biz.deinum.multitenant.aop.target.registry.ReleasingTargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TargetHealthCheck;
+import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+
+/**
+ * {@link TargetRegistry} which guards the targets of a delegate registry with
+ * a circuit breaker per context. The outcome of invocations is reported by a
+ * {@link biz.deinum.multitenant.aop.target.CircuitBreakerInterceptor}. When
+ * the failure rate over the last <code>windowSize</code> invocations reaches
+ * the threshold the circuit opens and lookups for that context fail fast with
+ * a {@link TargetUnavailableException}, or are served by the standby registry
+ * when one is configured.
+ * 
+ * After <code>openDuration</code> a single trial invocation is let through
+ * (half-open), its outcome closes or re-opens the circuit. With a
+ * {@link TargetHealthCheck} and {@link TaskScheduler} configured, open
+ * circuits are also probed in the background and closed as soon as the
+ * target is healthy again.
+ * 
+ * At most <code>maxContexts</code> contexts get a breaker. When the limit is
+ * reached the breakers of closed circuits without failures are dropped, if
+ * there are none, new contexts are not guarded until breakers become idle.
+ * Breakers of contexts for which the delegate no longer has a target are
+ * dropped on lookup.
+ * 
+ * The registry is ordered before other registries by default, so it is asked
+ * first when the registries are discovered from the context and the delegate
+ * is a bean as well.
+ * 
+ * Outcomes are only reported by the interceptor, which needs an advised
+ * proxy such as one created by a <code>ProxyFactoryBean</code>. Proxies of
+ * the {@link biz.deinum.multitenant.aop.target.MultitenantProxyFactory}, and
+ * so of <code>&#64;TenantRouted</code> interfaces, cannot carry advice; their
+ * circuits never open.
+ * 
+ * @since 1.3
+ */
+public class CircuitBreakerTargetRegistry<T> implements ReleasingTargetRegistry<T>, Ordered, InitializingBean,
+        DisposableBean {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(CircuitBreakerTargetRegistry.class);
+
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<String, Breaker>();
+
+    private final TargetRegistry<T> delegate;
+
+    private TargetRegistry<T> standbyRegistry;
+
+    private int windowSize = 20;
+
+    private int minimumInvocations = 10;
+
+    private int failureRateThreshold = 50;
+
+    private long openDuration = 30000;
+
+    private List<Class<? extends Throwable>> failureExceptions = Collections
+            .<Class<? extends Throwable>> singletonList(Exception.class);
+
+    private TargetHealthCheck<T> healthCheck;
+
+    private TaskScheduler taskScheduler;
+
+    private long probeInterval = 5000;
+
+    private ScheduledFuture<?> probe;
+
+    private int maxContexts = 10000;
+
+    private int order = Ordered.HIGHEST_PRECEDENCE;
+
+    public CircuitBreakerTargetRegistry(final TargetRegistry<T> delegate) {
+        super();
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the target of the delegate while the circuit of the context is
+     * closed, otherwise the standby target.
+     * 
+     * @throws TargetUnavailableException when the circuit is open and there
+     * is no standby target
+     */
+    public T getTarget(final String context) {
+        final T target = this.delegate.getTarget(context);
+        if (context == null) {
+            return target;
+        }
+        if (target == null) {
+            // The context has no target (anymore), nothing to guard
+            this.breakers.remove(context);
+            return null;
+        }
+        final Breaker breaker = this.breaker(context);
+        if (breaker == null) {
+            return target;
+        }
+        if (breaker.target != target) {
+            breaker.target = target;
+        }
+        if (breaker.allowInvocation(System.currentTimeMillis())) {
+            return target;
+        }
+        final T standby = this.standbyRegistry != null ? this.standbyRegistry.getTarget(context) : null;
+        if (standby == null) {
+            throw new TargetUnavailableException("The target for context '" + context + "' is unavailable");
+        }
+        this.logger.debug("Using standby target for context '{}'", context);
+        return standby;
+    }
+
+    /**
+     * Whether the delegate or standby registry requires targets to be released.
+     */
+    public boolean isReleaseRequired() {
+        return isReleaseRequired(this.delegate) || isReleaseRequired(this.standbyRegistry);
+    }
+
+    /**
+     * Pass the target on to the delegate and standby registry.
+     */
+    public void release(final Object target) {
+        release(this.delegate, target);
+        if (this.standbyRegistry != this.delegate) {
+            release(this.standbyRegistry, target);
+        }
+    }
+
+    /**
+     * Record a successful invocation, invocations on other than the primary
+     * target of the context are ignored.
+     */
+    public void recordSuccess(final String context, final Object target) {
+        final Breaker breaker = this.primaryBreaker(context, target);
+        if (breaker != null) {
+            breaker.onSuccess();
+        }
+    }
+
+    /**
+     * Record a failed invocation, only failures matching one of the
+     * <code>failureExceptions</code> count.
+     */
+    public void recordFailure(final String context, final Object target, final Throwable ex) {
+        final Breaker breaker = this.primaryBreaker(context, target);
+        if (breaker == null) {
+            return;
+        }
+        if (this.isFailure(ex)) {
+            if (breaker.onFailure(System.currentTimeMillis())) {
+                this.logger.warn("Circuit opened for context '" + context + "'", ex);
+            }
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    public State getState(final String context) {
+        final Breaker breaker = this.breakers.get(context);
+        return breaker != null ? breaker.state : State.CLOSED;
+    }
+
+    /**
+     * Probe the targets of all open circuits and close the circuits of the
+     * healthy ones. Called periodically when a {@link TaskScheduler} is set.
+     */
+    public void probe() {
+        if (this.healthCheck == null) {
+            return;
+        }
+        for (final Map.Entry<String, Breaker> entry : this.breakers.entrySet()) {
+            final Breaker breaker = entry.getValue();
+            if (breaker.state != State.CLOSED) {
+                @SuppressWarnings("unchecked")
+                final T target = (T) breaker.target;
+                if (target != null && this.healthCheck.isHealthy(target)) {
+                    this.logger.info("Target for context '{}' recovered, closing circuit", entry.getKey());
+                    breaker.close();
+                    this.breakers.remove(entry.getKey(), breaker);
+                }
+            }
+        }
+    }
+
+    public void afterPropertiesSet() {
+        if (this.healthCheck != null && this.taskScheduler != null) {
+            this.probe = this.taskScheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    probe();
+                }
+            }, this.probeInterval);
+        }
+    }
+
+    public void destroy() {
+        if (this.probe != null) {
+            this.probe.cancel(false);
+        }
+    }
+
+    private Breaker breaker(final String context) {
+        Breaker breaker = this.breakers.get(context);
+        if (breaker == null) {
+            if (this.breakers.size() >= this.maxContexts) {
+                this.removeIdleBreakers();
+                if (this.breakers.size() >= this.maxContexts) {
+                    return null;
+                }
+            }
+            breaker = new Breaker(this.windowSize, this.minimumInvocations, this.failureRateThreshold,
+                    this.openDuration);
+            final Breaker existing = this.breakers.putIfAbsent(context, breaker);
+            if (existing != null) {
+                breaker = existing;
+            }
+        }
+        return breaker;
+    }
+
+    private void removeIdleBreakers() {
+        for (final Map.Entry<String, Breaker> entry : this.breakers.entrySet()) {
+            if (entry.getValue().isIdle()) {
+                this.breakers.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private Breaker primaryBreaker(final String context, final Object target) {
+        if (context == null) {
+            return null;
+        }
+        final Breaker breaker = this.breakers.get(context);
+        return breaker != null && breaker.target == target ? breaker : null;
+    }
+
+    private static boolean isReleaseRequired(final TargetRegistry<?> registry) {
+        return registry instanceof ReleasingTargetRegistry && ((ReleasingTargetRegistry<?>) registry).isReleaseRequired();
+    }
+
+    private static void release(final TargetRegistry<?> registry, final Object target) {
+        if (registry instanceof ReleasingTargetRegistry) {
+            ((ReleasingTargetRegistry<?>) registry).release(target);
+        }
+    }
+
+    private boolean isFailure(final Throwable ex) {
+        for (final Class<? extends Throwable> failure : this.failureExceptions) {
+            if (failure.isInstance(ex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registry used for contexts with an open circuit, default none.
+     */
+    public void setStandbyRegistry(final TargetRegistry<T> standbyRegistry) {
+        this.standbyRegistry = standbyRegistry;
+    }
+
+    /**
+     * Number of most recent invocations the failure rate is computed over, default 20.
+     */
+    public void setWindowSize(final int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Minimum number of invocations in the window before the circuit can open, default 10.
+     */
+    public void setMinimumInvocations(final int minimumInvocations) {
+        this.minimumInvocations = minimumInvocations;
+    }
+
+    /**
+     * Failure rate in percent at which the circuit opens, default 50.
+     */
+    public void setFailureRateThreshold(final int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * Time in milliseconds an open circuit waits before a trial invocation, default 30000.
+     */
+    public void setOpenDuration(final long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Exceptions which count as failures, default all exceptions.
+     */
+    public void setFailureExceptions(final List<Class<? extends Throwable>> failureExceptions) {
+        this.failureExceptions = new ArrayList<Class<? extends Throwable>>(failureExceptions);
+    }
+
+    /**
+     * Maximum number of contexts with a breaker, default 10000.
+     */
+    public void setMaxContexts(final int maxContexts) {
+        this.maxContexts = maxContexts;
+    }
+
+    public void setHealthCheck(final TargetHealthCheck<T> healthCheck) {
+        this.healthCheck = healthCheck;
+    }
+
+    /**
+     * Scheduler used to probe open circuits, default none (no background probe).
+     */
+    public void setTaskScheduler(final TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Delay in milliseconds between probes of open circuits, default 5000.
+     */
+    public void setProbeInterval(final long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Order of this registry, default {@link Ordered#HIGHEST_PRECEDENCE}.
+     */
+    public void setOrder(final int order) {
+        this.order = order;
+    }
+
+    /**
+     * Number of contexts with a breaker.
+     */
+    int getBreakerCount() {
+        return this.breakers.size();
+    }
+
+    /**
+     * Circuit breaker of a single context, counting the outcome of the last
+     * invocations in a ring buffer.
+     */
+    private static final class Breaker {
+
+        private final boolean[] window;
+        private final int minimumInvocations;
+        private final int failureRateThreshold;
+        private final long openDuration;
+
+        private volatile State state = State.CLOSED;
+        private volatile Object target;
+        private int index;
+        private int invocations;
+        private int failures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        Breaker(final int windowSize, final int minimumInvocations, final int failureRateThreshold,
+                final long openDuration) {
+            this.window = new boolean[windowSize];
+            this.minimumInvocations = minimumInvocations;
+            this.failureRateThreshold = failureRateThreshold;
+            this.openDuration = openDuration;
+        }
+
+        boolean allowInvocation(final long now) {
+            if (this.state == State.CLOSED) {
+                return true;
+            }
+            synchronized (this) {
+                if (this.state == State.OPEN && now - this.openedAt >= this.openDuration) {
+                    this.state = State.HALF_OPEN;
+                }
+                // A trial which never reported back is replaced after openDuration
+                if (this.state == State.HALF_OPEN
+                        && (!this.trialInFlight || now - this.openedAt >= this.openDuration)) {
+                    this.trialInFlight = true;
+                    this.openedAt = now;
+                    return true;
+                }
+                return this.state == State.CLOSED;
+            }
+        }
+
+        synchronized void onSuccess() {
+            if (this.state == State.HALF_OPEN) {
+                this.close();
+            } else if (this.state == State.CLOSED) {
+                this.record(false);
+            }
+        }
+
+        /**
+         * @return <code>true</code> when the failure opened the circuit
+         */
+        synchronized boolean onFailure(final long now) {
+            if (this.state == State.HALF_OPEN) {
+                this.open(now);
+                return true;
+            }
+            if (this.state == State.CLOSED) {
+                this.record(true);
+                if (this.invocations >= this.minimumInvocations
+                        && this.failures * 100 >= this.failureRateThreshold * this.invocations) {
+                    this.open(now);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized boolean isIdle() {
+            return this.state == State.CLOSED && this.failures == 0;
+        }
+
+        synchronized void close() {
+            this.state = State.CLOSED;
+            this.trialInFlight = false;
+            Arrays.fill(this.window, false);
+            this.index = 0;
+            this.invocations = 0;
+            this.failures = 0;
+        }
+
+        private void open(final long now) {
+            this.state = State.OPEN;
+            this.openedAt = now;
+            this.trialInFlight = false;
+        }
+
+        private void record(final boolean failure) {
+            if (this.invocations == this.window.length) {
+                if (this.window[this.index]) {
+                    this.failures--;
+                }
+            } else {
+                this.invocations++;
+            }
+            this.window[this.index] = failure;
+            if (failure) {
+                this.failures++;
+            }
+            this.index = (this.index + 1) % this.window.length;
+        }
+    }
+
+}
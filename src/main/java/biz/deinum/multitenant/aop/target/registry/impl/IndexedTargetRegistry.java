@@ -0,0 +1,120 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import biz.deinum.multitenant.aop.target.registry.AbstractTargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantTargetRegistry;
+import biz.deinum.multitenant.core.TenantId;
+
+/**
+ * TargetRegistry which stores the targets in an array indexed by
+ * {@link TenantId#getIndex()}. Lookups by {@link TenantId} are a single, 
+ * wait-free array read. The array is sized to the highest index registered
+ * here and copied when targets for new tenants are registered, registration
+ * is expected to be rare.
+ * 
+ * Registering interns the tenant, lookups by <code>String</code> never do.
+ * 
+ * @see TenantId
+ */
+public class IndexedTargetRegistry<T> extends AbstractTargetRegistry<T> implements TenantTargetRegistry<T> {
+
+    private volatile AtomicReferenceArray<T> targets = new AtomicReferenceArray<T>(0);
+
+    /**
+     * Replace all targets, readers see either the old or the new targets.
+     */
+    public synchronized void setTargets(final Map<String, T> targets) {
+        final Map<TenantId, T> indexed = new HashMap<TenantId, T>();
+        int length = 0;
+        for (final Map.Entry<String, T> entry : targets.entrySet()) {
+            final TenantId tenantId = TenantId.of(entry.getKey());
+            indexed.put(tenantId, entry.getValue());
+            length = Math.max(length, tenantId.getIndex() + 1);
+        }
+        final AtomicReferenceArray<T> table = new AtomicReferenceArray<T>(length);
+        for (final Map.Entry<TenantId, T> entry : indexed.entrySet()) {
+            table.set(entry.getKey().getIndex(), entry.getValue());
+        }
+        this.targets = table;
+    }
+
+    public void register(final String context, final T target) {
+        this.register(TenantId.of(context), target);
+    }
+
+    public synchronized void register(final TenantId tenantId, final T target) {
+        final int index = tenantId.getIndex();
+        AtomicReferenceArray<T> current = this.targets;
+        if (index >= current.length()) {
+            final AtomicReferenceArray<T> grown = new AtomicReferenceArray<T>(index + 1);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            this.targets = grown;
+            current = grown;
+        }
+        current.set(index, target);
+    }
+
+    /**
+     * Remove the target of the context, <code>null</code> or unknown contexts
+     * are ignored.
+     */
+    public synchronized void remove(final String context) {
+        final TenantId tenantId = TenantId.find(context);
+        if (tenantId != null && tenantId.getIndex() < this.targets.length()) {
+            this.targets.set(tenantId.getIndex(), null);
+        }
+    }
+
+    /**
+     * Retrieves the target by index, asking the parent registry when there is
+     * none.
+     */
+    @SuppressWarnings("unchecked")
+    public T getTarget(final TenantId tenantId) {
+        final T target = this.lookup(tenantId);
+        final TargetRegistry<T> parent = this.getParentRegistry();
+        if (target != null || tenantId == null || parent == null) {
+            return target;
+        }
+        if (parent instanceof TenantTargetRegistry) {
+            return ((TenantTargetRegistry<T>) parent).getTarget(tenantId);
+        }
+        return parent.getTarget(tenantId.getValue());
+    }
+
+    @Override
+    protected T getTargetInternal(final String context) {
+        return this.lookup(TenantId.find(context));
+    }
+
+    private T lookup(final TenantId tenantId) {
+        if (tenantId == null) {
+            return null;
+        }
+        final AtomicReferenceArray<T> current = this.targets;
+        final int index = tenantId.getIndex();
+        return index < current.length() ? current.get(index) : null;
+    }
+
+}
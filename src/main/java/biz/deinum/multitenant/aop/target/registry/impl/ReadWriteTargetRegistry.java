@@ -0,0 +1,245 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import biz.deinum.multitenant.aop.target.registry.AbstractTargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantContextTargetRegistry;
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+import biz.deinum.multitenant.core.TenantId;
+
+/**
+ * TargetRegistry which routes writes of a tenant to its primary target and
+ * reads to one of its replica targets. A lookup is a read when the
+ * {@link #READ_ONLY} attribute of the {@link TenantContext} is set to 
+ * <code>true</code> or, without that hint, when the current Spring managed
+ * transaction is read-only.
+ * 
+ * Reads go to the replica with the fewest active invocations. An invocation
+ * is active from the lookup until the target is handed back with
+ * {@link #release(Object)}, the
+ * {@link biz.deinum.multitenant.aop.target.ContextSwappableTargetSource} does
+ * this after each invocation on the proxy. Tenants without replicas always
+ * use the primary.
+ * 
+ * Only invocations on the proxy are counted, not the use of what they return.
+ * For a <code>DataSource</code> an invocation is a <code>getConnection()</code>
+ * call, not the lifetime of the connection, so connections are spread over the
+ * replicas about evenly regardless of how long they are held.
+ * 
+ * Spring marks the transaction read-only only after it has begun, when used
+ * for a <code>DataSource</code> wrap the proxy in a 
+ * <code>LazyConnectionDataSourceProxy</code> so the connection is obtained
+ * after the flag is set.
+ * 
+ * @see ContextHolder#withTenantContext(TenantContext)
+ */
+public class ReadWriteTargetRegistry<T> extends AbstractTargetRegistry<T> implements TenantContextTargetRegistry<T> {
+
+    /** Hint to route a lookup to a replica (<code>true</code>) or the primary (<code>false</code>). */
+    public static final ContextAttribute<Boolean> READ_ONLY = ContextAttribute.of("readOnly", Boolean.class);
+
+    private Map<String, T> primaries = Collections.emptyMap();
+
+    private Map<String, List<T>> replicas = Collections.emptyMap();
+
+    private volatile Map<TenantId, Group<T>> groups = Collections.emptyMap();
+
+    private volatile Map<Object, AtomicLong> active = Collections.emptyMap();
+
+    private boolean useTransactionReadOnly = true;
+
+    /**
+     * The primary target of each tenant, keyed by tenant.
+     */
+    public synchronized void setPrimaryTargets(final Map<String, T> primaries) {
+        this.primaries = new HashMap<String, T>(primaries);
+        this.rebuild();
+    }
+
+    /**
+     * The replica targets of each tenant, keyed by tenant. A replica can be
+     * shared by tenants.
+     */
+    public synchronized void setReplicaTargets(final Map<String, List<T>> replicas) {
+        this.replicas = new HashMap<String, List<T>>(replicas);
+        this.rebuild();
+    }
+
+    /**
+     * Whether the read-only flag of the current transaction is used when
+     * there is no {@link #READ_ONLY} hint, default <code>true</code>.
+     */
+    public void setUseTransactionReadOnly(final boolean useTransactionReadOnly) {
+        this.useTransactionReadOnly = useTransactionReadOnly;
+    }
+
+    public T getTarget(final TenantContext context) {
+        final T target = this.lookup(context);
+        if (target == null && context != null) {
+            return this.getTarget(context.getTenant());
+        }
+        return target;
+    }
+
+    @Override
+    protected T getTargetInternal(final String context) {
+        if (context == null) {
+            return null;
+        }
+        return this.lookup(TenantContext.of(context));
+    }
+
+    @Override
+    public boolean isReleaseRequired() {
+        return true;
+    }
+
+    /**
+     * Hand back a target obtained from this registry, targets from elsewhere
+     * are passed on to the parent registry.
+     */
+    @Override
+    public void release(final Object target) {
+        final AtomicLong count = this.active.get(target);
+        if (count == null) {
+            super.release(target);
+            return;
+        }
+        long current;
+        do {
+            current = count.get();
+            if (current == 0) {
+                return;
+            }
+        } while (!count.compareAndSet(current, current - 1));
+    }
+
+    /**
+     * Number of active invocations of the replica target.
+     */
+    long getActiveInvocations(final Object target) {
+        final AtomicLong count = this.active.get(target);
+        return count != null ? count.get() : 0;
+    }
+
+    private T lookup(final TenantContext context) {
+        if (context == null) {
+            return null;
+        }
+        final Group<T> group = this.groups.get(context.getTenantId());
+        if (group == null) {
+            return null;
+        }
+        if (group.replicas.length == 0 || !this.isReadOnly(context)) {
+            // A primary which is also a replica of another tenant is counted as well
+            if (group.primaryActive != null) {
+                group.primaryActive.incrementAndGet();
+            }
+            return group.primary;
+        }
+        return this.fewestActive(group);
+    }
+
+    private boolean isReadOnly(final TenantContext context) {
+        final Boolean hint = context.getAttribute(READ_ONLY);
+        if (hint != null) {
+            return hint;
+        }
+        return this.useTransactionReadOnly && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private T fewestActive(final Group<T> group) {
+        final Replica<T>[] replicas = group.replicas;
+        // Start at a random replica so ties are spread
+        final int start = replicas.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(replicas.length);
+        Replica<T> best = replicas[start];
+        long lowest = best.active.get();
+        for (int i = 1; i < replicas.length && lowest > 0; i++) {
+            final Replica<T> replica = replicas[(start + i) % replicas.length];
+            final long count = replica.active.get();
+            if (count < lowest) {
+                best = replica;
+                lowest = count;
+            }
+        }
+        best.active.incrementAndGet();
+        return best.target;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void rebuild() {
+        final Map<Object, AtomicLong> counters = new IdentityHashMap<Object, AtomicLong>();
+        for (final List<T> targets : this.replicas.values()) {
+            for (final T target : targets) {
+                if (!counters.containsKey(target)) {
+                    final AtomicLong counter = this.active.get(target);
+                    counters.put(target, counter != null ? counter : new AtomicLong());
+                }
+            }
+        }
+        final Map<TenantId, Group<T>> tenants = new HashMap<TenantId, Group<T>>();
+        for (final Map.Entry<String, T> primary : this.primaries.entrySet()) {
+            final List<T> targets = this.replicas.containsKey(primary.getKey()) ? this.replicas.get(primary.getKey())
+                    : Collections.<T> emptyList();
+            final Replica<T>[] group = new Replica[targets.size()];
+            for (int i = 0; i < group.length; i++) {
+                final T target = targets.get(i);
+                group[i] = new Replica<T>(target, counters.get(target));
+            }
+            tenants.put(TenantId.of(primary.getKey()),
+                    new Group<T>(primary.getValue(), counters.get(primary.getValue()), group));
+        }
+        this.active = counters;
+        this.groups = tenants;
+    }
+
+    private static final class Group<T> {
+
+        private final T primary;
+        private final AtomicLong primaryActive;
+        private final Replica<T>[] replicas;
+
+        Group(final T primary, final AtomicLong primaryActive, final Replica<T>[] replicas) {
+            this.primary = primary;
+            this.primaryActive = primaryActive;
+            this.replicas = replicas;
+        }
+    }
+
+    private static final class Replica<T> {
+
+        private final T target;
+        private final AtomicLong active;
+
+        Replica(final T target, final AtomicLong active) {
+            this.target = target;
+            this.active = active;
+        }
+    }
+
+}
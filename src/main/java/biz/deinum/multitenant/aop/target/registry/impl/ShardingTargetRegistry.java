@@ -0,0 +1,225 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.util.DigestUtils;
+
+import biz.deinum.multitenant.aop.target.registry.AbstractTargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantTargetRegistry;
+import biz.deinum.multitenant.core.TenantId;
+
+/**
+ * TargetRegistry which maps tenants onto a fixed set of named shards, each
+ * with its own target, using consistent hashing. Every shard is placed on a
+ * hash ring a number of times (virtual nodes) and a tenant is assigned to the
+ * first shard following the hash of the tenant on the ring. Adding or 
+ * removing a shard only moves the tenants of the affected ring segments, 
+ * about <code>1/shards</code> of all tenants.
+ * 
+ * Large tenants can be pinned to a shard with overrides. Assignments are not
+ * cached, a lookup is a hash of the tenant and a binary search on the ring,
+ * so nothing is retained for the tenants looked up. Changing the shards or
+ * overrides publishes a new ring, readers are never blocked.
+ * 
+ * Every tenant maps onto some shard, unknown tenants are not rejected by this
+ * registry; use a {@link biz.deinum.multitenant.web.ContextValidator} for that.
+ * 
+ * @see #getShard(String)
+ */
+public class ShardingTargetRegistry<T> extends AbstractTargetRegistry<T> implements TenantTargetRegistry<T> {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, T> targets = new LinkedHashMap<String, T>();
+
+    private final Map<String, String> overrides = new LinkedHashMap<String, String>();
+
+    private int virtualNodes = DEFAULT_VIRTUAL_NODES;
+
+    private volatile Ring<T> ring = new Ring<T>(Collections.<String, T> emptyMap(),
+            Collections.<String, String> emptyMap(), DEFAULT_VIRTUAL_NODES);
+
+    /**
+     * The targets keyed by shard name. Shards are placed on the ring by name,
+     * so keep names stable when changing the set of shards.
+     */
+    public synchronized void setTargets(final Map<String, T> targets) {
+        final Map<String, T> previous = new LinkedHashMap<String, T>(this.targets);
+        this.targets.clear();
+        this.targets.putAll(targets);
+        try {
+            this.rebuild();
+        } catch (IllegalArgumentException e) {
+            this.targets.clear();
+            this.targets.putAll(previous);
+            throw e;
+        }
+    }
+
+    public synchronized void addTarget(final String shard, final T target) {
+        this.targets.put(shard, target);
+        this.rebuild();
+    }
+
+    /**
+     * Remove a shard, its tenants are spread over the remaining shards.
+     * 
+     * @throws IllegalArgumentException when the shard is used by an override
+     */
+    public synchronized void removeTarget(final String shard) {
+        if (this.overrides.containsValue(shard)) {
+            throw new IllegalArgumentException("Shard '" + shard + "' is used by an override");
+        }
+        this.targets.remove(shard);
+        this.rebuild();
+    }
+
+    /**
+     * Pin tenants to shards, keyed by tenant with the shard name as value.
+     */
+    public synchronized void setOverrides(final Map<String, String> overrides) {
+        final Map<String, String> previous = new LinkedHashMap<String, String>(this.overrides);
+        this.overrides.clear();
+        this.overrides.putAll(overrides);
+        try {
+            this.rebuild();
+        } catch (IllegalArgumentException e) {
+            this.overrides.clear();
+            this.overrides.putAll(previous);
+            throw e;
+        }
+    }
+
+    /**
+     * Number of times each shard is placed on the ring, default 160. More
+     * virtual nodes spread tenants more evenly at the cost of a larger ring.
+     */
+    public synchronized void setVirtualNodes(final int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+        this.virtualNodes = virtualNodes;
+        this.rebuild();
+    }
+
+    /**
+     * The name of the shard the tenant is assigned to, or <code>null</code>
+     * when there are no shards. Useful to plan the migration of tenants
+     * before the shards are changed.
+     */
+    public String getShard(final String context) {
+        return context != null ? this.ring.shardFor(context) : null;
+    }
+
+    public T getTarget(final TenantId tenantId) {
+        final T target = tenantId != null ? this.ring.targetFor(tenantId.getValue()) : null;
+        if (target == null && tenantId != null) {
+            return this.getTarget(tenantId.getValue());
+        }
+        return target;
+    }
+
+    @Override
+    protected T getTargetInternal(final String context) {
+        return context != null ? this.ring.targetFor(context) : null;
+    }
+
+    private void rebuild() {
+        for (final Map.Entry<String, String> override : this.overrides.entrySet()) {
+            if (!this.targets.containsKey(override.getValue())) {
+                throw new IllegalArgumentException("Override for '" + override.getKey() + "' refers to unknown shard '"
+                        + override.getValue() + "'");
+            }
+        }
+        this.ring = new Ring<T>(this.targets, this.overrides, this.virtualNodes);
+    }
+
+    static long hash(final String value) {
+        final byte[] digest = DigestUtils.md5Digest(value.getBytes(UTF8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    /**
+     * Immutable snapshot of the shards, ring positions are sorted so the
+     * shard of a tenant is found with a binary search.
+     */
+    private static final class Ring<T> {
+
+        private final Map<String, T> targets;
+        private final Map<String, String> overrides;
+        private final long[] points;
+        private final String[] shards;
+
+        Ring(final Map<String, T> targets, final Map<String, String> overrides, final int virtualNodes) {
+            this.targets = new LinkedHashMap<String, T>(targets);
+            this.overrides = new LinkedHashMap<String, String>(overrides);
+            final int size = targets.size() * virtualNodes;
+            final long[] unsorted = new long[size];
+            final Map<Long, String> owners = new HashMap<Long, String>(size * 2);
+            int i = 0;
+            for (final String shard : targets.keySet()) {
+                for (int node = 0; node < virtualNodes; node++) {
+                    final long point = hash(shard + "#" + node);
+                    // On the (unlikely) collision of two points the first shard wins
+                    if (!owners.containsKey(point)) {
+                        owners.put(point, shard);
+                        unsorted[i++] = point;
+                    }
+                }
+            }
+            this.points = Arrays.copyOf(unsorted, i);
+            Arrays.sort(this.points);
+            this.shards = new String[i];
+            for (int p = 0; p < i; p++) {
+                this.shards[p] = owners.get(this.points[p]);
+            }
+        }
+
+        String shardFor(final String tenant) {
+            final String override = this.overrides.get(tenant);
+            if (override != null) {
+                return override;
+            }
+            if (this.points.length == 0) {
+                return null;
+            }
+            int index = Arrays.binarySearch(this.points, hash(tenant));
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return this.shards[index == this.points.length ? 0 : index];
+        }
+
+        T targetFor(final String tenant) {
+            final String shard = this.shardFor(tenant);
+            return shard != null ? this.targets.get(shard) : null;
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
 package biz.deinum.multitenant.aop.target.registry.impl;
 
 import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.TenantTargetRegistry;
+import biz.deinum.multitenant.core.TenantId;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -24,15 +26,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * {@link TargetRegistry} implementation that does some simple caching.
  * It first checks the internal cache it it hasn't found a target it checks
  * the delegate TargetRegistry for a target, if found it is registered in the
- * internal cache for future use.
+ * internal cache for future use. The cache is keyed by interned {@link TenantId},
+ * a context is only interned once the delegate returned a target for it.
  * 
  * @author Marten Deinum
  * @since 1.2.0
  *
  */
-public class SimpleCachingTargetRegistry<T> implements TargetRegistry<T> {
+public class SimpleCachingTargetRegistry<T> implements TenantTargetRegistry<T> {
 
-    private final Map<String, T> cache = new ConcurrentHashMap<String, T>();
+    private final Map<TenantId, T> cache = new ConcurrentHashMap<TenantId, T>();
     private final TargetRegistry<T> delegate;
 
     public SimpleCachingTargetRegistry(final TargetRegistry<T> delegate) {
@@ -41,11 +44,29 @@ public class SimpleCachingTargetRegistry<T> implements TargetRegistry<T> {
     }
 
     public T getTarget(final String context) {
-        T target = this.cache.get(context);
+        if (context == null) {
+            return this.delegate.getTarget(context);
+        }
+        final TenantId tenantId = TenantId.find(context);
+        if (tenantId != null) {
+            return this.getTarget(tenantId);
+        }
+        final T target = this.delegate.getTarget(context);
+        if (target != null) {
+            this.cache.put(TenantId.of(context), target);
+        }
+        return target;
+    }
+
+    public T getTarget(final TenantId tenantId) {
+        if (tenantId == null) {
+            return this.delegate.getTarget((String) null);
+        }
+        T target = this.cache.get(tenantId);
         if (target == null) {
-            target = this.delegate.getTarget(context);
+            target = this.delegate.getTarget(tenantId.getValue());
             if (target != null) {
-                this.cache.put(context, target);
+                this.cache.put(tenantId, target);
             }
         }
         return target;
@@ -8,6 +8,7 @@ import org.springframework.cache.Cache;
 
 import biz.deinum.multitenant.aop.target.TargetLookupFailureException;
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextSnapshot;
 
 /**
  * A {@link Cache} implementation that provides support for multi-tenancy by translating the lookup
@@ -21,6 +22,11 @@ import biz.deinum.multitenant.core.ContextHolder;
  * Care should be taken if using {@link #getNativeCache()} because the keys contained in that cache
  * instance will not match the keys that were given (they will have been translated into something
  * tenant-specific).
+ * 
+ * Code which does not run on the thread of the tenant, for instance callback based code, can pass a
+ * {@link ContextSnapshot} to {@link #get(ContextSnapshot, Object)}, {@link #put(ContextSnapshot, Object, Object)}
+ * and {@link #evict(ContextSnapshot, Object)}, the key is then translated for the context of the snapshot
+ * and the {@link ContextHolder} is not used.
  *
  * @author Joe Laudadio (Joe.Laudadio@AltegraHealth.com)
  *
@@ -81,6 +87,27 @@ public final class MultitenantCache implements Cache {
 		this.delegate.evict(translatedKey);
 	}
 
+	/**
+	 * Get the value for the context of the snapshot instead of the current thread.
+	 */
+	public ValueWrapper get(ContextSnapshot snapshot, Object key) {
+		return this.delegate.get(translateKey(snapshot.getContext(), key));
+	}
+
+	/**
+	 * Put the value for the context of the snapshot instead of the current thread.
+	 */
+	public void put(ContextSnapshot snapshot, Object key, Object value) {
+		this.delegate.put(translateKey(snapshot.getContext(), key), value);
+	}
+
+	/**
+	 * Evict the value for the context of the snapshot instead of the current thread.
+	 */
+	public void evict(ContextSnapshot snapshot, Object key) {
+		this.delegate.evict(translateKey(snapshot.getContext(), key));
+	}
+
 	@Override
 	public void clear() {
 		this.delegate.clear();
@@ -91,8 +118,11 @@ public final class MultitenantCache implements Cache {
 	}
 	
 	private TenantKey translateKey(Object key) throws TargetLookupFailureException {
+		return translateKey(ContextHolder.getContext(), key);
+	}
+
+	private TenantKey translateKey(String tenantContext, Object key) throws TargetLookupFailureException {
 		logger.debug("Translating key {}", key);
-		String tenantContext = ContextHolder.getContext();
 		if (this.contextRequired && (tenantContext == null || tenantContext.trim().isEmpty())) {
 			throw new TargetLookupFailureException("Tenant context is required but is not available");
 		}
@@ -126,7 +156,7 @@ public final class MultitenantCache implements Cache {
 		
 		@Override
 		public int hashCode() {
-			return Objects.hash(this.tenantContext, this.key);
+			return 31 * Objects.hashCode(this.tenantContext) + Objects.hashCode(this.key);
 		}
 	}
 }
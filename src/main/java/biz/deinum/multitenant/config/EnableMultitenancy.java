@@ -0,0 +1,61 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.context.annotation.Import;
+
+/**
+ * Enables annotation driven registration of multitenant beans. Interfaces
+ * annotated with {@link TenantRouted} in the given packages are registered
+ * as beans routing each call to the target of the current context.
+ * 
+ * <pre>
+ * &#064;Configuration
+ * &#064;EnableMultitenancy(basePackages = "com.example.repository")
+ * public class AppConfig { ... }
+ * </pre>
+ * 
+ * The <code>TargetRegistry</code> beans of the context are discovered once
+ * and shared by all routed beans.
+ * 
+ * @see TenantRouted
+ * @see TenantRoutedBeanDefinitionRegistryPostProcessor
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Import(MultitenancyBeanDefinitionRegistrar.class)
+public @interface EnableMultitenancy {
+
+    /**
+     * Packages to scan for {@link TenantRouted} interfaces, defaults to the
+     * package of the annotated class.
+     */
+    String[] basePackages() default {};
+
+    /**
+     * Type safe alternative for {@link #basePackages()}, the package of each
+     * class is scanned.
+     */
+    Class<?>[] basePackageClasses() default {};
+
+}
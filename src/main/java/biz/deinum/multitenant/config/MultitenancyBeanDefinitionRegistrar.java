@@ -0,0 +1,67 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.config;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import biz.deinum.multitenant.aop.target.SharedTargetRegistries;
+
+/**
+ * Registers the beans for {@link EnableMultitenancy}.
+ */
+class MultitenancyBeanDefinitionRegistrar implements ImportBeanDefinitionRegistrar {
+
+    static final String TARGET_REGISTRIES_BEAN_NAME = "multitenantTargetRegistries";
+
+    static final String POST_PROCESSOR_BEAN_NAME = "multitenantTenantRoutedPostProcessor";
+
+    public void registerBeanDefinitions(final AnnotationMetadata metadata, final BeanDefinitionRegistry registry) {
+        final Map<String, Object> attributes = metadata.getAnnotationAttributes(EnableMultitenancy.class.getName());
+        final Set<String> basePackages = new LinkedHashSet<String>();
+        for (final String basePackage : (String[]) attributes.get("basePackages")) {
+            if (StringUtils.hasText(basePackage)) {
+                basePackages.add(basePackage.trim());
+            }
+        }
+        for (final Class<?> basePackageClass : (Class<?>[]) attributes.get("basePackageClasses")) {
+            basePackages.add(ClassUtils.getPackageName(basePackageClass));
+        }
+        if (basePackages.isEmpty()) {
+            basePackages.add(ClassUtils.getPackageName(metadata.getClassName()));
+        }
+
+        if (!registry.containsBeanDefinition(TARGET_REGISTRIES_BEAN_NAME)) {
+            registry.registerBeanDefinition(TARGET_REGISTRIES_BEAN_NAME,
+                    BeanDefinitionBuilder.rootBeanDefinition(SharedTargetRegistries.class).getBeanDefinition());
+        }
+        final BeanDefinitionBuilder builder = BeanDefinitionBuilder
+                .rootBeanDefinition(TenantRoutedBeanDefinitionRegistryPostProcessor.class);
+        builder.addPropertyValue("basePackages", StringUtils.toStringArray(basePackages));
+        builder.addPropertyValue("targetRegistriesBeanName", TARGET_REGISTRIES_BEAN_NAME);
+        registry.registerBeanDefinition(
+                POST_PROCESSOR_BEAN_NAME + "#" + metadata.getClassName(), builder.getBeanDefinition());
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface as multitenant, a bean implementing the interface is
+ * registered which routes each call to the target for the current context.
+ * Only detected on interfaces, see {@link EnableMultitenancy}.
+ * 
+ * <pre>
+ * &#064;TenantRouted(defaultTarget = "defaultGreeter")
+ * public interface Greeter {
+ *     String greet();
+ * }
+ * </pre>
+ * 
+ * The targets must implement the annotated interface, targets of other types
+ * in the registries are skipped. A marker interface extending an existing
+ * type such as <code>DataSource</code> therefore does not work with plain
+ * <code>DataSource</code> targets; route such types with a
+ * {@link biz.deinum.multitenant.aop.target.ContextSwappableTargetSource} for
+ * the existing type instead.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface TenantRouted {
+
+    /**
+     * Name of the registered bean, defaults to the decapitalized simple name of
+     * the interface.
+     */
+    String value() default "";
+
+    /**
+     * Name of the bean used when no target is found for the current context.
+     */
+    String defaultTarget() default "";
+
+    /**
+     * Whether the routed bean is the primary candidate for autowiring, as the
+     * targets often are beans of the same type. Default <code>true</code>.
+     */
+    boolean primary() default true;
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.config;
+
+import java.beans.Introspector;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.ResourceLoaderAware;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Scans the configured packages for interfaces annotated with
+ * {@link TenantRouted} and registers a {@link TenantRoutedProxyFactoryBean}
+ * for each of them. The proxies share the registries of the
+ * {@link biz.deinum.multitenant.aop.target.SharedTargetRegistries} bean named
+ * by <code>targetRegistriesBeanName</code>, when not set each proxy discovers
+ * the registries itself.
+ * 
+ * Registered by {@link EnableMultitenancy}, can also be declared in XML.
+ */
+public class TenantRoutedBeanDefinitionRegistryPostProcessor implements BeanDefinitionRegistryPostProcessor,
+        EnvironmentAware, ResourceLoaderAware {
+
+    private final Logger logger = LoggerFactory.getLogger(TenantRoutedBeanDefinitionRegistryPostProcessor.class);
+
+    private String[] basePackages;
+
+    private String targetRegistriesBeanName;
+
+    private Environment environment = new StandardEnvironment();
+
+    private ResourceLoader resourceLoader;
+
+    private boolean processed = false;
+
+    public void postProcessBeanDefinitionRegistry(final BeanDefinitionRegistry registry) throws BeansException {
+        this.registerRoutedBeans(registry);
+    }
+
+    /**
+     * Registers the beans when this post processor was itself registered by
+     * another one and hence not called as a registry post processor.
+     */
+    public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (beanFactory instanceof BeanDefinitionRegistry) {
+            this.registerRoutedBeans((BeanDefinitionRegistry) beanFactory);
+        }
+    }
+
+    private synchronized void registerRoutedBeans(final BeanDefinitionRegistry registry) {
+        if (this.processed) {
+            return;
+        }
+        this.processed = true;
+        Assert.notEmpty(this.basePackages, "At least one base package must be set!");
+
+        final ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(
+                false, this.environment) {
+            @Override
+            protected boolean isCandidateComponent(final AnnotatedBeanDefinition beanDefinition) {
+                final AnnotationMetadata metadata = beanDefinition.getMetadata();
+                return metadata.isInterface() && metadata.isIndependent();
+            }
+        };
+        scanner.addIncludeFilter(new AnnotationTypeFilter(TenantRouted.class, false, true));
+        if (this.resourceLoader != null) {
+            scanner.setResourceLoader(this.resourceLoader);
+        }
+
+        for (final String basePackage : this.basePackages) {
+            for (final BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                this.register(((AnnotatedBeanDefinition) candidate).getMetadata(), registry);
+            }
+        }
+    }
+
+    private void register(final AnnotationMetadata metadata, final BeanDefinitionRegistry registry) {
+        final Map<String, Object> attributes = metadata.getAnnotationAttributes(TenantRouted.class.getName());
+        String beanName = (String) attributes.get("value");
+        if (!StringUtils.hasText(beanName)) {
+            beanName = Introspector.decapitalize(ClassUtils.getShortName(metadata.getClassName()));
+        }
+
+        final BeanDefinitionBuilder builder = BeanDefinitionBuilder
+                .rootBeanDefinition(TenantRoutedProxyFactoryBean.class);
+        builder.addConstructorArgValue(metadata.getClassName());
+        if (StringUtils.hasText(this.targetRegistriesBeanName)) {
+            builder.addPropertyReference("sharedTargetRegistries", this.targetRegistriesBeanName);
+        }
+        final String defaultTarget = (String) attributes.get("defaultTarget");
+        if (StringUtils.hasText(defaultTarget)) {
+            builder.addPropertyValue("defaultTarget", new RuntimeBeanReference(defaultTarget));
+        }
+        final AbstractBeanDefinition definition = builder.getBeanDefinition();
+        definition.setPrimary((Boolean) attributes.get("primary"));
+        definition.setSource(metadata.getClassName());
+
+        this.logger.debug("Registering tenant routed bean '{}' for {}", beanName, metadata.getClassName());
+        registry.registerBeanDefinition(beanName, definition);
+    }
+
+    /**
+     * The packages to scan for {@link TenantRouted} interfaces.
+     */
+    public void setBasePackages(final String... basePackages) {
+        this.basePackages = basePackages;
+    }
+
+    /**
+     * Name of the <code>SharedTargetRegistries</code> bean used by all proxies.
+     */
+    public void setTargetRegistriesBeanName(final String targetRegistriesBeanName) {
+        this.targetRegistriesBeanName = targetRegistriesBeanName;
+    }
+
+    public void setEnvironment(final Environment environment) {
+        this.environment = environment;
+    }
+
+    public void setResourceLoader(final ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.util.Assert;
+
+import biz.deinum.multitenant.aop.target.ContextSwappableTargetSource;
+import biz.deinum.multitenant.aop.target.MultitenantProxyFactory;
+import biz.deinum.multitenant.aop.target.SharedTargetRegistries;
+
+/**
+ * {@link FactoryBean} creating the proxy for a {@link TenantRouted} interface.
+ * The proxy class is generated at startup by the
+ * {@link MultitenantProxyFactory}, backed by a
+ * {@link ContextSwappableTargetSource} using the shared registries.
+ */
+public class TenantRoutedProxyFactoryBean implements FactoryBean<Object>, ApplicationContextAware, InitializingBean {
+
+    private final Class<?> proxyInterface;
+
+    private SharedTargetRegistries sharedTargetRegistries;
+
+    private Object defaultTarget;
+
+    private ApplicationContext context;
+
+    private Object proxy;
+
+    public TenantRoutedProxyFactoryBean(final Class<?> proxyInterface) {
+        super();
+        Assert.notNull(proxyInterface, "ProxyInterface cannot be null!");
+        this.proxyInterface = proxyInterface;
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        final ContextSwappableTargetSource targetSource = new ContextSwappableTargetSource(this.proxyInterface);
+        targetSource.setApplicationContext(this.context);
+        if (this.sharedTargetRegistries != null) {
+            targetSource.setTargetRegistries(this.sharedTargetRegistries.getTargetRegistries());
+        }
+        if (this.defaultTarget != null) {
+            targetSource.setAlwaysReturnTarget(true);
+            targetSource.setDefaultTarget(this.defaultTarget);
+        }
+        targetSource.afterPropertiesSet();
+        this.proxy = MultitenantProxyFactory.getProxy(this.proxyInterface, targetSource);
+    }
+
+    public Object getObject() {
+        return this.proxy;
+    }
+
+    public Class<?> getObjectType() {
+        return this.proxyInterface;
+    }
+
+    public boolean isSingleton() {
+        return true;
+    }
+
+    public void setSharedTargetRegistries(final SharedTargetRegistries sharedTargetRegistries) {
+        this.sharedTargetRegistries = sharedTargetRegistries;
+    }
+
+    public void setDefaultTarget(final Object defaultTarget) {
+        this.defaultTarget = defaultTarget;
+    }
+
+    public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException {
+        this.context = applicationContext;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+/**
+ * Typed key of an attribute of a {@link TenantContext}, for instance the
+ * region or shard of a tenant. Attributes are compared by identity, declare
+ * them as constants:
+ * 
+ * <pre>
+ * public static final ContextAttribute&lt;Integer&gt; SHARD = ContextAttribute.of("shard", Integer.class);
+ * </pre>
+ * 
+ * @param <T> the type of the attribute value
+ */
+public final class ContextAttribute<T> {
+
+	private final String name;
+
+	private final Class<T> type;
+
+	private ContextAttribute(final String name, final Class<T> type) {
+		this.name = name;
+		this.type = type;
+	}
+
+	public static <T> ContextAttribute<T> of(final String name, final Class<T> type) {
+		if (name == null || type == null) {
+			throw new IllegalArgumentException("Name and type are required");
+		}
+		return new ContextAttribute<T>(name, type);
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public Class<T> getType() {
+		return this.type;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
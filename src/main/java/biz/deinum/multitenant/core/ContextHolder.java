@@ -17,11 +17,23 @@ package biz.deinum.multitenant.core;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * ContextHolder will hold a reference to a context which can be used
- * through-out the application. The reference will be stored in a
- * <code>ThreadLocal</code>.
+ * through-out the application. Storing the reference is delegated to a
+ * {@link ContextHolderStrategy}, by default a <code>ThreadLocal</code>.
+ * 
+ * The context is a {@link TenantContext}, the tenant plus optional typed
+ * attributes. The <code>String</code> based methods operate on the tenant
+ * only, setting a <code>String</code> context discards the attributes.
+ * 
+ * The strategy is selected with the <code>multitenant.context.strategy</code>
+ * system property or {@link #setStrategyName(String)}, either
+ * {@link #MODE_THREADLOCAL}, {@link #MODE_INHERITABLETHREADLOCAL} or the
+ * class name of a custom {@link ContextHolderStrategy}. Select it once at
+ * startup, contexts set through a previous strategy are not carried over.
  * 
  * @author Marten Deinum
  * @version 1.0
@@ -29,22 +41,145 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class ContextHolder {
 
+	public static final String MODE_THREADLOCAL = "MODE_THREADLOCAL";
+	public static final String MODE_INHERITABLETHREADLOCAL = "MODE_INHERITABLETHREADLOCAL";
+	public static final String SYSTEM_PROPERTY = "multitenant.context.strategy";
+
 	private static final Logger logger = LoggerFactory
 			.getLogger(ContextHolder.class);
-	private static final ThreadLocal<String> holder = new ThreadLocal<String>();
+
+	private static volatile ContextHolderStrategy strategy;
+
+	private static final ThreadLocal<ContextScope.Frames> scopes = new ThreadLocal<ContextScope.Frames>() {
+		@Override
+		protected ContextScope.Frames initialValue() {
+			return new ContextScope.Frames();
+		}
+	};
+
+	static {
+		setStrategyName(System.getProperty(SYSTEM_PROPERTY));
+	}
 
 	public static void setContext(final String context) {
+		setTenantContext(TenantContext.of(context));
+	}
+
+	public static void setTenantContext(final TenantContext context) {
 		logger.debug("context set '{}'", context);
-		holder.set(context);
+		strategy.setContext(context);
+		ContextLeakDetector.contextSet(context != null ? context.getTenant() : null);
+	}
+
+	public static void setTenantId(final TenantId tenantId) {
+		setContext(tenantId != null ? tenantId.getValue() : null);
 	}
 
 	public static String getContext() {
-		return holder.get();
+		final TenantContext context = strategy.getContext();
+		return context != null ? context.getTenant() : null;
+	}
+
+	public static TenantContext getTenantContext() {
+		return strategy.getContext();
+	}
+
+	/**
+	 * The current context as interned {@link TenantId}, or <code>null</code>
+	 * when there is no context or the tenant is not interned.
+	 */
+	public static TenantId getTenantId() {
+		final TenantContext context = strategy.getContext();
+		return context != null ? context.getTenantId() : null;
+	}
+
+	/**
+	 * Set the context until the returned scope is closed, which restores the
+	 * previous context. Scopes can be nested.
+	 * 
+	 * @see ContextScope
+	 */
+	public static ContextScope withContext(final String context) {
+		final ContextScope.Frames frames = scopes.get();
+		return open(frames, frames.contextFor(context));
+	}
+
+	/**
+	 * Set the context, including its attributes, until the returned scope is
+	 * closed.
+	 * 
+	 * @see #withContext(String)
+	 */
+	public static ContextScope withTenantContext(final TenantContext context) {
+		return open(scopes.get(), context);
+	}
+
+	private static ContextScope open(final ContextScope.Frames frames,
+			final TenantContext context) {
+		final ContextScope scope = frames.push(strategy.getContext());
+		setTenantContext(context);
+		return scope;
+	}
+
+	/**
+	 * Restore a previous context. Unlike {@link #clear()} this keeps the
+	 * storage of the thread in place, as the thread is likely to set a context
+	 * again.
+	 */
+	static void restoreContext(final TenantContext context) {
+		logger.debug("context restored '{}'", context);
+		strategy.setContext(context);
+		if (context == null) {
+			ContextLeakDetector.contextCleared();
+		}
 	}
 
 	public static void clear() {
 		logger.debug("context cleared");
-		holder.remove();
+		strategy.clearContext();
+		ContextLeakDetector.contextCleared();
+	}
+
+	/**
+	 * Select the strategy by mode or class name, <code>null</code> selects
+	 * {@link #MODE_THREADLOCAL}.
+	 */
+	public static void setStrategyName(final String strategyName) {
+		if (!StringUtils.hasText(strategyName)
+				|| MODE_THREADLOCAL.equals(strategyName)) {
+			setContextHolderStrategy(new ThreadLocalContextHolderStrategy());
+		} else if (MODE_INHERITABLETHREADLOCAL.equals(strategyName)) {
+			setContextHolderStrategy(new InheritableThreadLocalContextHolderStrategy());
+		} else {
+			try {
+				Class<?> clazz = ClassUtils.forName(strategyName,
+						ContextHolder.class.getClassLoader());
+				setContextHolderStrategy((ContextHolderStrategy) clazz
+						.getDeclaredConstructor().newInstance());
+			} catch (Exception e) {
+				throw new IllegalArgumentException(
+						"Unable to create ContextHolderStrategy '"
+								+ strategyName + "'", e);
+			}
+		}
+	}
+
+	public static void setContextHolderStrategy(
+			final ContextHolderStrategy contextHolderStrategy) {
+		if (contextHolderStrategy == null) {
+			throw new IllegalArgumentException(
+					"ContextHolderStrategy cannot be null");
+		}
+		if (strategy != null) {
+			strategy.clearContext();
+		}
+		strategy = contextHolderStrategy;
+		logger.debug("Using ContextHolderStrategy '{}'", contextHolderStrategy
+				.getClass().getName());
+	}
+
+	public static ContextHolderStrategy getContextHolderStrategy() {
+		return strategy;
 	}
 
 }
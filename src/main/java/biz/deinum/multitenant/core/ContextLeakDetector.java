@@ -0,0 +1,197 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects contexts which are left behind on a thread, for instance by a
+ * missed {@link ContextHolder#clear()} on a pooled thread. Such a context
+ * would otherwise silently route the next request or task of that thread to
+ * the wrong tenant.
+ * 
+ * Leaks are checked at boundaries where the context is known: a new request
+ * entering the {@link biz.deinum.multitenant.web.filter.ContextFilter} should
+ * find no context and a task should leave the context as it found it. A leak
+ * is logged, counted and repaired. The {@link Level} determines the overhead:
+ * 
+ * <ul>
+ * <li>{@link Level#DISABLED} - no checks, the default</li>
+ * <li>{@link Level#SIMPLE} - boundary checks only, suitable for production</li>
+ * <li>{@link Level#ADVANCED} - also records where a sampled context was set</li>
+ * <li>{@link Level#PARANOID} - records where every context was set</li>
+ * </ul>
+ * 
+ * The level is read from the <code>multitenant.leakDetection.level</code>
+ * system property or set with {@link #setLevel(Level)}.
+ */
+public final class ContextLeakDetector {
+
+	public enum Level {
+		DISABLED, SIMPLE, ADVANCED, PARANOID
+	}
+
+	public static final String SYSTEM_PROPERTY = "multitenant.leakDetection.level";
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ContextLeakDetector.class);
+
+	private static final ThreadLocal<ContextOrigin> origins = new ThreadLocal<ContextOrigin>();
+
+	private static final AtomicLong leaks = new AtomicLong();
+
+	private static volatile Level level = Level.DISABLED;
+
+	private static volatile int samplingInterval = 128;
+
+	static {
+		String property = System.getProperty(SYSTEM_PROPERTY);
+		if (property != null) {
+			setLevel(Level.valueOf(property.trim().toUpperCase()));
+		}
+	}
+
+	private ContextLeakDetector() {
+	}
+
+	public static void setLevel(final Level level) {
+		if (level == null) {
+			throw new IllegalArgumentException("Level cannot be null");
+		}
+		ContextLeakDetector.level = level;
+	}
+
+	public static Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Record where the context was set for one in <code>samplingInterval</code>
+	 * contexts at {@link Level#ADVANCED}, default 128.
+	 */
+	public static void setSamplingInterval(final int samplingInterval) {
+		if (samplingInterval < 1) {
+			throw new IllegalArgumentException("samplingInterval must be at least 1");
+		}
+		ContextLeakDetector.samplingInterval = samplingInterval;
+	}
+
+	/**
+	 * Number of leaks detected since startup.
+	 */
+	public static long getLeakCount() {
+		return leaks.get();
+	}
+
+	public static boolean isEnabled() {
+		return level != Level.DISABLED;
+	}
+
+	/**
+	 * Check that the current thread has no context, for instance when it
+	 * starts a new request. A leaked context is reported and cleared.
+	 * 
+	 * @param boundary description of the boundary, used in the report
+	 */
+	public static void checkCleared(final String boundary) {
+		if (level == Level.DISABLED) {
+			return;
+		}
+		final String context = ContextHolder.getContext();
+		if (context != null) {
+			report(context, boundary);
+			ContextHolder.clear();
+		}
+	}
+
+	/**
+	 * Check that the current thread has the expected context, for instance
+	 * when a task is finished. A leaked context is reported and the expected
+	 * context restored.
+	 * 
+	 * @param expected the context the thread had before the boundary
+	 * @param boundary description of the boundary, used in the report
+	 */
+	public static void checkRestored(final String expected, final String boundary) {
+		if (level == Level.DISABLED) {
+			return;
+		}
+		final String context = ContextHolder.getContext();
+		if (context != null && !context.equals(expected)) {
+			report(context, boundary);
+			if (expected != null) {
+				ContextHolder.setContext(expected);
+			} else {
+				ContextHolder.clear();
+			}
+		}
+	}
+
+	static void contextSet(final String context) {
+		final Level current = level;
+		if (current.compareTo(Level.ADVANCED) < 0) {
+			return;
+		}
+		if (context == null) {
+			origins.remove();
+		} else if (current == Level.PARANOID
+				|| ThreadLocalRandom.current().nextInt(samplingInterval) == 0) {
+			origins.set(new ContextOrigin(context));
+		} else if (origins.get() != null) {
+			origins.set(null);
+		}
+	}
+
+	static void contextCleared() {
+		if (level.compareTo(Level.ADVANCED) >= 0) {
+			origins.remove();
+		}
+	}
+
+	private static void report(final String context, final String boundary) {
+		leaks.incrementAndGet();
+		final ContextOrigin origin = origins.get();
+		origins.remove();
+		if (origin != null && origin.context.equals(context)) {
+			logger.warn("Context '" + context + "' leaked past " + boundary
+					+ " on thread '" + Thread.currentThread().getName()
+					+ "', it was set at:", origin);
+		} else {
+			logger.warn("Context '{}' leaked past {} on thread '{}', use level "
+					+ "ADVANCED or PARANOID to record where it was set.",
+					new Object[] { context, boundary, Thread.currentThread().getName() });
+		}
+	}
+
+	/**
+	 * Captures the stack trace of the code which set the context.
+	 */
+	private static final class ContextOrigin extends Throwable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String context;
+
+		ContextOrigin(final String context) {
+			super("Context '" + context + "' set");
+			this.context = context;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+/**
+ * Scope returned by {@link ContextHolder#withContext(String)}, closing it
+ * restores the context which was set before the scope was opened. Meant for
+ * try-with-resources:
+ * 
+ * <pre>
+ * try (ContextScope scope = ContextHolder.withContext("tenant1")) {
+ *     // code running for tenant1
+ * }
+ * </pre>
+ * 
+ * Scopes must be closed in reverse order of opening, on the thread that
+ * opened them. Closing a scope while a scope opened after it is still open
+ * throws an {@link IllegalStateException}, closing a scope again has no
+ * effect, also when a newer scope has been opened at the same level since.
+ * 
+ * Each thread keeps the state of one frame per nesting level which is
+ * reused, a scope is only a small handle on such a frame stamped with the
+ * generation of the frame at the time it was opened. The
+ * {@link TenantContext} created by {@link ContextHolder#withContext(String)}
+ * is reused as well when the same tenant is opened again at the same level.
+ * 
+ * @see ContextHolder#withContext(String)
+ */
+public final class ContextScope implements AutoCloseable {
+
+	private final Frame frame;
+
+	private final int generation;
+
+	private ContextScope(final Frame frame, final int generation) {
+		this.frame = frame;
+		this.generation = generation;
+	}
+
+	/**
+	 * Number of scopes currently open on this thread.
+	 */
+	public int getDepth() {
+		return this.frame.frames.depth;
+	}
+
+	/**
+	 * Restore the previous context.
+	 * 
+	 * @throws IllegalStateException when a scope opened after this one is
+	 *         still open
+	 */
+	@Override
+	public void close() {
+		final Frame frame = this.frame;
+		if (!frame.open || frame.generation != this.generation) {
+			return;
+		}
+		final Frames frames = frame.frames;
+		if (frame.level != frames.depth - 1) {
+			throw new IllegalStateException("Scope at level " + frame.level + " closed while "
+					+ frames.depth + " scopes are open, scopes must be closed in reverse order");
+		}
+		final TenantContext context = frame.previous;
+		frame.previous = null;
+		frame.open = false;
+		frames.depth--;
+		ContextHolder.restoreContext(context);
+	}
+
+	/**
+	 * The state of the scope opened at one nesting level, reused by every
+	 * scope opened at that level.
+	 */
+	private static final class Frame {
+
+		private final Frames frames;
+
+		private final int level;
+
+		private TenantContext previous;
+
+		private boolean open;
+
+		private int generation;
+
+		private TenantContext lastContext;
+
+		private Frame(final Frames frames, final int level) {
+			this.frames = frames;
+			this.level = level;
+		}
+	}
+
+	/**
+	 * The frames of a thread, one per nesting level.
+	 */
+	static final class Frames {
+
+		private Frame[] scopes = new Frame[4];
+
+		private int depth;
+
+		/**
+		 * The context for the tenant, reusing the one last opened at the next
+		 * level when it is for the same tenant.
+		 */
+		TenantContext contextFor(final String tenant) {
+			if (tenant == null) {
+				return null;
+			}
+			final Frame scope = this.scope(this.depth);
+			final TenantContext last = scope.lastContext;
+			if (last != null && last.getTenant().equals(tenant)) {
+				return last;
+			}
+			final TenantContext context = TenantContext.of(tenant);
+			scope.lastContext = context;
+			return context;
+		}
+
+		ContextScope push(final TenantContext previous) {
+			final Frame scope = this.scope(this.depth);
+			scope.previous = previous;
+			scope.open = true;
+			this.depth++;
+			return new ContextScope(scope, ++scope.generation);
+		}
+
+		private Frame scope(final int level) {
+			if (level == this.scopes.length) {
+				final Frame[] grown = new Frame[level * 2];
+				System.arraycopy(this.scopes, 0, grown, 0, level);
+				this.scopes = grown;
+			}
+			Frame scope = this.scopes[level];
+			if (scope == null) {
+				scope = new Frame(this, level);
+				this.scopes[level] = scope;
+			}
+			return scope;
+		}
+	}
+}
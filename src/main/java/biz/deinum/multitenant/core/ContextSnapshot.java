@@ -0,0 +1,121 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Immutable snapshot of a context which can be applied to the
+ * {@link ContextHolder} of any thread around a unit of work. The previous
+ * context of that thread is restored afterwards.
+ * 
+ * This is the bridge for code which is not bound to a single thread, for
+ * instance callback or event-loop based code which has to call beans routed
+ * by a {@link biz.deinum.multitenant.aop.target.ContextSwappableTargetSource}:
+ * capture the context where it is known and apply it around each blocking
+ * call. Unlike the task interceptors a snapshot is thread-safe and can be
+ * applied any number of times, concurrently.
+ * 
+ * @see ContextHolder
+ */
+public final class ContextSnapshot {
+
+	private final TenantContext context;
+
+	private ContextSnapshot(final TenantContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Capture the context, including its attributes, of the current thread.
+	 */
+	public static ContextSnapshot capture() {
+		return new ContextSnapshot(ContextHolder.getTenantContext());
+	}
+
+	/**
+	 * Create a snapshot for the given context.
+	 */
+	public static ContextSnapshot of(final String context) {
+		return new ContextSnapshot(TenantContext.of(context));
+	}
+
+	/**
+	 * Create a snapshot for the given context, including its attributes.
+	 */
+	public static ContextSnapshot of(final TenantContext context) {
+		return new ContextSnapshot(context);
+	}
+
+	public String getContext() {
+		return this.context != null ? this.context.getTenant() : null;
+	}
+
+	public TenantContext getTenantContext() {
+		return this.context;
+	}
+
+	/**
+	 * Call the task with this context set.
+	 */
+	public <V> V call(final Callable<V> task) throws Exception {
+		final ContextScope scope = ContextHolder.withTenantContext(this.context);
+		try {
+			return task.call();
+		} finally {
+			scope.close();
+		}
+	}
+
+	/**
+	 * Run the task with this context set.
+	 */
+	public void run(final Runnable task) {
+		final ContextScope scope = ContextHolder.withTenantContext(this.context);
+		try {
+			task.run();
+		} finally {
+			scope.close();
+		}
+	}
+
+	/**
+	 * Decorate the task so that it always runs with this context set.
+	 */
+	public Runnable wrap(final Runnable task) {
+		return new Runnable() {
+			public void run() {
+				ContextSnapshot.this.run(task);
+			}
+		};
+	}
+
+	/**
+	 * Decorate the task so that it is always called with this context set.
+	 */
+	public <V> Callable<V> wrap(final Callable<V> task) {
+		return new Callable<V>() {
+			public V call() throws Exception {
+				return ContextSnapshot.this.call(task);
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "ContextSnapshot [context=" + this.context + "]";
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable context of the current tenant: the tenant itself plus optional
+ * typed attributes such as region or shard. Registries implementing
+ * {@link biz.deinum.multitenant.aop.target.registry.TenantContextTargetRegistry}
+ * route on the attributes directly, instead of parsing them out of the tenant
+ * string.
+ * 
+ * <pre>
+ * ContextHolder.setTenantContext(TenantContext.of("tenant1").with(SHARD, 3));
+ * </pre>
+ * 
+ * @see ContextHolder#getTenantContext()
+ * @see ContextAttribute
+ */
+public final class TenantContext {
+
+	private final String tenant;
+
+	private final Map<ContextAttribute<?>, Object> attributes;
+
+	private volatile TenantId tenantId;
+
+	private TenantContext(final String tenant, final Map<ContextAttribute<?>, Object> attributes) {
+		this.tenant = tenant;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Create a context without attributes, or <code>null</code> when the
+	 * tenant is <code>null</code>.
+	 */
+	public static TenantContext of(final String tenant) {
+		if (tenant == null) {
+			return null;
+		}
+		return new TenantContext(tenant, Collections.<ContextAttribute<?>, Object> emptyMap());
+	}
+
+	/**
+	 * Return a copy of this context with the attribute set, a
+	 * <code>null</code> value removes the attribute.
+	 */
+	public <T> TenantContext with(final ContextAttribute<T> attribute, final T value) {
+		final Map<ContextAttribute<?>, Object> copy = new LinkedHashMap<ContextAttribute<?>, Object>(this.attributes);
+		if (value != null) {
+			copy.put(attribute, attribute.getType().cast(value));
+		} else {
+			copy.remove(attribute);
+		}
+		return new TenantContext(this.tenant, Collections.unmodifiableMap(copy));
+	}
+
+	public String getTenant() {
+		return this.tenant;
+	}
+
+	/**
+	 * The tenant as interned {@link TenantId}, <code>null</code> when the
+	 * tenant is not interned. Once found it is kept for this context.
+	 * 
+	 * @see TenantId#find(String)
+	 */
+	public TenantId getTenantId() {
+		TenantId id = this.tenantId;
+		if (id == null) {
+			id = TenantId.find(this.tenant);
+			this.tenantId = id;
+		}
+		return id;
+	}
+
+	/**
+	 * The value of the attribute or <code>null</code> when not set.
+	 */
+	public <T> T getAttribute(final ContextAttribute<T> attribute) {
+		return attribute.getType().cast(this.attributes.get(attribute));
+	}
+
+	public Map<ContextAttribute<?>, Object> getAttributes() {
+		return this.attributes;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TenantContext)) {
+			return false;
+		}
+		final TenantContext other = (TenantContext) obj;
+		return this.tenant.equals(other.tenant) && this.attributes.equals(other.attributes);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.tenant.hashCode() + this.attributes.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return this.attributes.isEmpty() ? this.tenant : this.tenant + this.attributes;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned identifier of a tenant. There is exactly one instance per tenant
+ * value, so instances can be compared by identity. Each instance carries a
+ * precomputed hash and a dense index, starting at 0 and assigned in order of
+ * first use, which registries can use for array based lookups.
+ * 
+ * Interned instances are never released, so only values of known tenants are
+ * interned with {@link #of(String)}: when targets are registered for them or
+ * when they are configured on a
+ * {@link biz.deinum.multitenant.web.KnownContextValidator}. Lookups for
+ * incoming contexts use {@link #find(String)}, which never interns, and fall
+ * back to the <code>String</code> based lookup for unknown values.
+ * 
+ * @see ContextHolder#getTenantId()
+ */
+public final class TenantId implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ConcurrentMap<String, TenantId> interned = new ConcurrentHashMap<String, TenantId>();
+
+	private static final Object lock = new Object();
+
+	private final String value;
+
+	private final int index;
+
+	private final int hash;
+
+	private final boolean blank;
+
+	private TenantId(final String value, final int index) {
+		this.value = value;
+		this.index = index;
+		this.hash = value.hashCode();
+		this.blank = value.trim().isEmpty();
+	}
+
+	/**
+	 * Return the interned identifier for the given value, or <code>null</code>
+	 * when the value is <code>null</code>.
+	 */
+	public static TenantId of(final String value) {
+		if (value == null) {
+			return null;
+		}
+		TenantId tenantId = interned.get(value);
+		if (tenantId == null) {
+			synchronized (lock) {
+				tenantId = interned.get(value);
+				if (tenantId == null) {
+					tenantId = new TenantId(value, interned.size());
+					interned.put(value, tenantId);
+				}
+			}
+		}
+		return tenantId;
+	}
+
+	/**
+	 * Return the interned identifier for the given value without interning it,
+	 * <code>null</code> when the value is unknown or <code>null</code>.
+	 */
+	public static TenantId find(final String value) {
+		return value != null ? interned.get(value) : null;
+	}
+
+	/**
+	 * Number of interned identifiers, all indexes are below this value.
+	 */
+	public static int count() {
+		return interned.size();
+	}
+
+	public String getValue() {
+		return this.value;
+	}
+
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Whether the value is empty or only contains whitespace.
+	 */
+	public boolean isBlank() {
+		return this.blank;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	private Object readResolve() {
+		return of(this.value);
+	}
+
+	@Override
+	public String toString() {
+		return this.value;
+	}
+}
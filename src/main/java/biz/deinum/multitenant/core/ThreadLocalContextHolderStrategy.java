@@ -0,0 +1,37 @@
+/*
+ * Copyright 2007-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.deinum.multitenant.core;
+
+/**
+ * <code>ThreadLocal</code> based {@link ContextHolderStrategy}, the default.
+ */
+final class ThreadLocalContextHolderStrategy implements ContextHolderStrategy {
+
+	private final ThreadLocal<TenantContext> holder = new ThreadLocal<TenantContext>();
+
+	public void setContext(final TenantContext context) {
+		holder.set(context);
+	}
+
+	public TenantContext getContext() {
+		return holder.get();
+	}
+
+	public void clearContext() {
+		holder.remove();
+	}
+
+}
@@ -0,0 +1,62 @@
+package biz.deinum.multitenant.hibernate;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.springframework.util.StringUtils;
+
+import biz.deinum.multitenant.aop.target.TargetLookupFailureException;
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * {@code CurrentTenantIdentifierResolver} which uses the context from the
+ * {@link ContextHolder} as the Hibernate tenant identifier.
+ * 
+ * When no context is set the <code>defaultTenantIdentifier</code> is used, if
+ * there is none a {@link TargetLookupFailureException} is thrown.
+ * 
+ * @see TargetRegistryMultiTenantConnectionProvider
+ */
+public class ContextHolderCurrentTenantIdentifierResolver implements CurrentTenantIdentifierResolver {
+
+	private String defaultTenantIdentifier;
+
+	private boolean validateExistingCurrentSessions = true;
+
+	@Override
+	public String resolveCurrentTenantIdentifier() {
+		String context = ContextHolder.getContext();
+		if (StringUtils.hasText(context)) {
+			return context;
+		}
+		if (defaultTenantIdentifier != null) {
+			return defaultTenantIdentifier;
+		}
+		throw new TargetLookupFailureException("Cannot determine tenant identifier, no context set");
+	}
+
+	@Override
+	public boolean validateExistingCurrentSessions() {
+		return validateExistingCurrentSessions;
+	}
+
+	/**
+	 * The tenant identifier to use when no context is set, for instance
+	 * during startup. Default is <code>null</code>, which results in an
+	 * exception.
+	 * 
+	 * @param defaultTenantIdentifier
+	 */
+	public void setDefaultTenantIdentifier(String defaultTenantIdentifier) {
+		this.defaultTenantIdentifier = defaultTenantIdentifier;
+	}
+
+	/**
+	 * Whether Hibernate should check that the tenant of an existing current
+	 * session matches the resolved tenant. Default is <code>true</code>.
+	 * 
+	 * @param validateExistingCurrentSessions
+	 */
+	public void setValidateExistingCurrentSessions(
+			boolean validateExistingCurrentSessions) {
+		this.validateExistingCurrentSessions = validateExistingCurrentSessions;
+	}
+}
@@ -0,0 +1,70 @@
+package biz.deinum.multitenant.hibernate;
+
+import javax.sql.DataSource;
+
+import org.hibernate.service.jdbc.connections.spi.AbstractDataSourceBasedMultiTenantConnectionProviderImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import biz.deinum.multitenant.aop.target.TargetLookupFailureException;
+import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+
+/**
+ * {@code MultiTenantConnectionProvider} which resolves the {@code DataSource}
+ * for a tenant through a {@link TargetRegistry}. This allows a single
+ * {@code SessionFactory} to serve all tenants with the
+ * <code>DATABASE</code> (or, with a {@code DataSource} per schema, the
+ * <code>SCHEMA</code>) multi-tenancy strategy, instead of routing a
+ * {@code SessionFactory} per tenant through a
+ * {@link biz.deinum.multitenant.aop.target.ContextSwappableTargetSource}.
+ * 
+ * The <code>defaultDataSource</code> is used by Hibernate when no tenant is
+ * known, for instance to read database metadata during startup.
+ * 
+ * Wrap the registry in a
+ * {@link biz.deinum.multitenant.aop.target.registry.impl.SimpleCachingTargetRegistry}
+ * when lookups are expensive (bean factory, JNDI).
+ * 
+ * @see ContextHolderCurrentTenantIdentifierResolver
+ */
+public class TargetRegistryMultiTenantConnectionProvider extends
+		AbstractDataSourceBasedMultiTenantConnectionProviderImpl {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(TargetRegistryMultiTenantConnectionProvider.class);
+
+	private final TargetRegistry<DataSource> registry;
+
+	private final DataSource defaultDataSource;
+
+	public TargetRegistryMultiTenantConnectionProvider(
+			TargetRegistry<DataSource> registry, DataSource defaultDataSource) {
+		super();
+		if (registry == null) {
+			throw new IllegalArgumentException("TargetRegistry cannot be null!");
+		}
+		if (defaultDataSource == null) {
+			throw new IllegalArgumentException("Default DataSource cannot be null!");
+		}
+		this.registry = registry;
+		this.defaultDataSource = defaultDataSource;
+	}
+
+	@Override
+	protected DataSource selectAnyDataSource() {
+		return defaultDataSource;
+	}
+
+	@Override
+	protected DataSource selectDataSource(String tenantIdentifier) {
+		DataSource dataSource = registry.getTarget(tenantIdentifier);
+		if (dataSource == null) {
+			logger.error("Cannot locate a DataSource for tenant '{}'", tenantIdentifier);
+			throw new TargetLookupFailureException("Cannot locate a DataSource for tenant '"
+					+ tenantIdentifier + "'");
+		}
+		return dataSource;
+	}
+}
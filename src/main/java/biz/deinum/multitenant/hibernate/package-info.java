@@ -0,0 +1,36 @@
+/**
+ * <p>
+ * Classes for using Hibernate's own multi-tenancy support with a single
+ * {@code SessionFactory} for all tenants. The
+ * {@link biz.deinum.multitenant.hibernate.ContextHolderCurrentTenantIdentifierResolver}
+ * exposes the context of the {@link biz.deinum.multitenant.core.ContextHolder}
+ * as the tenant identifier, the
+ * {@link biz.deinum.multitenant.hibernate.TargetRegistryMultiTenantConnectionProvider}
+ * obtains the {@code DataSource} of a tenant from a
+ * {@link biz.deinum.multitenant.aop.target.registry.TargetRegistry}.
+ * </p>
+ * 
+ * <p>
+ * Here is an example of what your spring configuration might look like:
+ * <pre>
+ * &lt;bean id="sessionFactory" class="org.springframework.orm.hibernate4.LocalSessionFactoryBean"&gt;
+ *    &lt;property name="dataSource" ref="defaultDataSource"/&gt;
+ *    &lt;property name="hibernateProperties"&gt;
+ *       &lt;map&gt;
+ *          &lt;entry key="hibernate.multiTenancy" value="DATABASE"/&gt;
+ *          &lt;entry key="hibernate.multi_tenant_connection_provider" value-ref="connectionProvider"/&gt;
+ *          &lt;entry key="hibernate.tenant_identifier_resolver" value-ref="tenantIdentifierResolver"/&gt;
+ *       &lt;/map&gt;
+ *    &lt;/property&gt;
+ * &lt;/bean&gt;
+ *
+ * &lt;bean id="connectionProvider" class="biz.deinum.multitenant.hibernate.TargetRegistryMultiTenantConnectionProvider"&gt;
+ *    &lt;constructor-arg ref="dataSourceRegistry"/&gt;
+ *    &lt;constructor-arg ref="defaultDataSource"/&gt;
+ * &lt;/bean&gt;
+ *
+ * &lt;bean id="tenantIdentifierResolver" class="biz.deinum.multitenant.hibernate.ContextHolderCurrentTenantIdentifierResolver"/&gt;
+ * </pre>
+ * </p>
+ */
+package biz.deinum.multitenant.hibernate;
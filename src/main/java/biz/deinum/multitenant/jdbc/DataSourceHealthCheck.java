@@ -0,0 +1,43 @@
+package biz.deinum.multitenant.jdbc;
+
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import biz.deinum.multitenant.aop.target.registry.TargetHealthCheck;
+
+/**
+ * {@code TargetHealthCheck} for {@code DataSource} targets, a target is
+ * healthy when a connection can be obtained and is valid within the
+ * <code>timeout</code>.
+ * 
+ * @see biz.deinum.multitenant.aop.target.registry.impl.CircuitBreakerTargetRegistry
+ */
+public class DataSourceHealthCheck implements TargetHealthCheck<DataSource> {
+
+	private final Logger logger = LoggerFactory.getLogger(DataSourceHealthCheck.class);
+
+	private int timeout = 2;
+
+	@Override
+	public boolean isHealthy(DataSource target) {
+		try (Connection connection = target.getConnection()) {
+			return connection.isValid(timeout);
+		} catch (Exception e) {
+			logger.debug("DataSource '{}' is not healthy: {}", target, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Timeout in seconds for validating the connection, default 2.
+	 * 
+	 * @param timeout
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+}
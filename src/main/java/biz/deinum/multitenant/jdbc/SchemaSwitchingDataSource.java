@@ -0,0 +1,251 @@
+package biz.deinum.multitenant.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * {@code DataSource} which borrows connections from a single, shared,
+ * (pooled) {@code DataSource} and switches them to the schema of the current
+ * context in the {@link ContextHolder}. Instead of a connection pool per
+ * tenant there is one pool for all tenants.
+ * 
+ * The schema name is constructed from the context with the configured
+ * <code>prefix</code> and <code>suffix</code> and must consist of letters,
+ * digits and underscores only. The schema is switched by executing the
+ * <code>switchStatement</code>, by default <code>SET SCHEMA %s</code>
+ * (H2, HSQLDB, Derby, DB2). Use for instance
+ * <code>SET search_path TO %s</code> for PostgreSQL or
+ * <code>ALTER SESSION SET CURRENT_SCHEMA = %s</code> for Oracle.
+ * 
+ * When the connection is closed (returned to the pool) it is switched back to
+ * the <code>defaultSchema</code>, so every connection borrowed from the pool
+ * is known to be on the default schema. No statement is executed when the
+ * schema of the context is the default schema, or when there is no context.
+ * 
+ * When the reset fails the connection is aborted instead of returned to the
+ * pool, it would otherwise be handed to the next borrower on the schema of
+ * the tenant. When the pool does not support aborting a connection, every
+ * connection borrowed from then on is explicitly switched, also to the
+ * default schema.
+ * 
+ * @see ContextHolder
+ */
+public class SchemaSwitchingDataSource extends DelegatingDataSource {
+
+	private static final Pattern VALID_SCHEMA = Pattern.compile("[A-Za-z0-9_]+");
+
+	private static final Executor ABORT_EXECUTOR = new SyncTaskExecutor();
+
+	private final Logger logger = LoggerFactory
+			.getLogger(SchemaSwitchingDataSource.class);
+
+	private String defaultSchema;
+	private String switchStatement = "SET SCHEMA %s";
+	private String prefix = "";
+	private String suffix = "";
+
+	/** Set when a connection on a tenant schema may have been returned to the pool */
+	private volatile boolean resetOnBorrow = false;
+
+	public SchemaSwitchingDataSource() {
+		super();
+	}
+
+	public SchemaSwitchingDataSource(DataSource targetDataSource,
+			String defaultSchema) {
+		super(targetDataSource);
+		this.defaultSchema = defaultSchema;
+		afterPropertiesSet();
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		Assert.hasText(defaultSchema, "The defaultSchema property must be set!");
+		Assert.isTrue(VALID_SCHEMA.matcher(defaultSchema).matches(),
+				"The defaultSchema '" + defaultSchema + "' is not a valid schema name!");
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return switchSchema(getTargetDataSource().getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password)
+			throws SQLException {
+		return switchSchema(getTargetDataSource().getConnection(username,
+				password));
+	}
+
+	private Connection switchSchema(Connection connection) throws SQLException {
+		String schema = determineSchema();
+		if (schema == null || schema.equalsIgnoreCase(defaultSchema)) {
+			if (resetOnBorrow) {
+				try {
+					execute(connection, defaultSchema);
+				} catch (SQLException ex) {
+					connection.close();
+					throw ex;
+				}
+			}
+			return connection;
+		}
+		try {
+			execute(connection, schema);
+		} catch (SQLException ex) {
+			connection.close();
+			throw ex;
+		}
+		return (Connection) Proxy.newProxyInstance(
+				ConnectionProxy.class.getClassLoader(),
+				new Class<?>[] { ConnectionProxy.class },
+				new SchemaResettingInvocationHandler(connection));
+	}
+
+	/**
+	 * Determine the schema for the current context.
+	 * 
+	 * @return the schema or <code>null</code> if there is no context
+	 * @throws SQLException if the resulting schema name is invalid
+	 */
+	protected String determineSchema() throws SQLException {
+		String context = ContextHolder.getContext();
+		if (!StringUtils.hasText(context)) {
+			return null;
+		}
+		String schema = prefix + context + suffix;
+		if (!VALID_SCHEMA.matcher(schema).matches()) {
+			throw new SQLException("Invalid schema name '" + schema
+					+ "' for context '" + context + "'");
+		}
+		return schema;
+	}
+
+	private void execute(Connection connection, String schema)
+			throws SQLException {
+		logger.debug("Switching connection to schema '{}'", schema);
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(String.format(switchStatement, schema));
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Discard a connection which could not be reset to the default schema.
+	 */
+	private void discard(Connection connection, SQLException cause) {
+		logger.warn("Could not reset connection to schema '" + defaultSchema
+				+ "', aborting it", cause);
+		try {
+			connection.abort(ABORT_EXECUTOR);
+			return;
+		} catch (SQLException ex) {
+			logger.warn("Could not abort connection, switching schema on every borrow from now on", ex);
+		} catch (AbstractMethodError ex) {
+			// Driver or pool predating JDBC 4.1
+			logger.warn("Could not abort connection, switching schema on every borrow from now on");
+		}
+		resetOnBorrow = true;
+		try {
+			connection.close();
+		} catch (SQLException ex) {
+			logger.debug("Could not close connection", ex);
+		}
+	}
+
+	/**
+	 * The schema the connections of the target {@code DataSource} are on by
+	 * default. Connections are reset to this schema on close.
+	 * 
+	 * @param defaultSchema
+	 */
+	public void setDefaultSchema(String defaultSchema) {
+		this.defaultSchema = defaultSchema;
+	}
+
+	/**
+	 * The statement to switch schema, <code>%s</code> is replaced with the
+	 * schema name.
+	 * 
+	 * @param switchStatement
+	 */
+	public void setSwitchStatement(String switchStatement) {
+		Assert.hasText(switchStatement, "switchStatement cannot be empty!");
+		this.switchStatement = switchStatement;
+	}
+
+	public void setPrefix(String prefix) {
+		this.prefix = (prefix != null ? prefix : "");
+	}
+
+	public void setSuffix(String suffix) {
+		this.suffix = (suffix != null ? suffix : "");
+	}
+
+	/**
+	 * Resets the schema before the connection is returned to the pool.
+	 */
+	private class SchemaResettingInvocationHandler implements InvocationHandler {
+
+		private final Connection target;
+		private boolean closed = false;
+
+		public SchemaResettingInvocationHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if (name.equals("equals")) {
+				return (proxy == args[0]);
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("getTargetConnection")) {
+				return target;
+			} else if (name.equals("isClosed") && closed) {
+				return true;
+			} else if (name.equals("close")) {
+				if (!closed) {
+					closed = true;
+					try {
+						execute(target, defaultSchema);
+					} catch (SQLException ex) {
+						discard(target, ex);
+						throw ex;
+					}
+					target.close();
+				}
+				return null;
+			}
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+}
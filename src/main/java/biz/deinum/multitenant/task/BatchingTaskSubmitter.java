@@ -0,0 +1,235 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * Groups many small tasks of the same tenant into a single execution unit on a delegate
+ * {@link AsyncTaskExecutor}. The {@link TaskInterceptor} chain (a {@link MultitenantContextTaskInterceptor}
+ * for the tenant followed by the configured interceptors) is applied once around the whole batch instead
+ * of around every task, so for instance a {@link Hibernate4OpenSessionTaskInterceptor} opens a single
+ * session for the batch.
+ * 
+ * Tasks are grouped by the tenant context of the submitting thread. A batch is dispatched when it reaches
+ * the batch size, when the linger time since its first task has passed or when {@link #flush()} is called.
+ * The linger time requires a {@link TaskScheduler}; without one, batches are only dispatched when full or
+ * flushed.
+ * 
+ * Every task gets its own {@link ListenableTaskFuture}; a failing task does not affect the other tasks in
+ * the batch. If the interceptor chain fails before the batch runs, or the delegate rejects the batch, all
+ * tasks of the batch fail.
+ *
+ */
+public class BatchingTaskSubmitter {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final AsyncTaskExecutor delegate;
+	private final TaskScheduler scheduler;
+	private final List<TaskInterceptor> interceptors;
+	private final Map<TenantContext, Batch> pending = new HashMap<>();
+	private int batchSize = 100;
+	private long lingerTime = 10;
+
+	public BatchingTaskSubmitter(AsyncTaskExecutor delegate, TaskScheduler scheduler, List<TaskInterceptor> taskInterceptors) {
+		Objects.requireNonNull(delegate);
+		this.delegate = delegate;
+		this.scheduler = scheduler;
+		this.interceptors = new ArrayList<>();
+		if (taskInterceptors != null) {
+			this.interceptors.addAll(taskInterceptors);
+		}
+	}
+
+	/**
+	 * Set the maximum number of tasks in a single batch. Default is 100.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the time in milliseconds a batch waits for more tasks before it is dispatched. Default is 10.
+	 * Only applies when a {@link TaskScheduler} is configured.
+	 */
+	public void setLingerTime(long lingerTime) {
+		this.lingerTime = lingerTime;
+	}
+
+	public ListenableTaskFuture<?> submit(Runnable task) {
+		Objects.requireNonNull(task);
+		TenantContext tenant = ContextHolder.getTenantContext();
+		return add(new ListenableFutureTask<Object>(task, null, tenant));
+	}
+
+	public <T> ListenableTaskFuture<T> submit(Callable<T> task) {
+		Objects.requireNonNull(task);
+		TenantContext tenant = ContextHolder.getTenantContext();
+		return add(new ListenableFutureTask<T>(task, tenant));
+	}
+
+	/**
+	 * Dispatch all pending batches, regardless of their size.
+	 */
+	public void flush() {
+		List<Batch> batches;
+		synchronized (this.pending) {
+			batches = new ArrayList<>(this.pending.values());
+			this.pending.clear();
+		}
+		for (Batch batch : batches) {
+			dispatch(batch);
+		}
+	}
+
+	private <T> ListenableFutureTask<T> add(ListenableFutureTask<T> future) {
+		TenantContext tenant = future.getTenantContext();
+		Batch full = null;
+		synchronized (this.pending) {
+			Batch batch = this.pending.get(tenant);
+			if (batch == null) {
+				batch = new Batch(tenant);
+				this.pending.put(tenant, batch);
+				if (this.scheduler != null && this.lingerTime > 0 && this.batchSize > 1) {
+					batch.linger = this.scheduler.schedule(new Flush(batch), new Date(System.currentTimeMillis() + this.lingerTime));
+				}
+			}
+			batch.tasks.add(future);
+			if (batch.tasks.size() >= this.batchSize) {
+				this.pending.remove(tenant);
+				full = batch;
+			}
+		}
+		if (full != null) {
+			dispatch(full);
+		}
+		return future;
+	}
+
+	private void dispatch(Batch batch) {
+		if (batch.linger != null) {
+			batch.linger.cancel(false);
+		}
+		logger.debug("Dispatching batch of {} tasks for tenant '{}'", batch.tasks.size(), batch.tenant);
+		List<TaskInterceptor> chain = new ArrayList<>(this.interceptors.size() + 1);
+		chain.add(new MultitenantContextTaskInterceptor(batch.tenant));
+		chain.addAll(this.interceptors);
+		try {
+			this.delegate.execute(new BatchRunnable(batch.tasks, new TaskInterceptorChain(chain)));
+		} catch (RejectedExecutionException ex) {
+			logger.error("Failed to dispatch batch of {} tasks for tenant '{}'", batch.tasks.size(), batch.tenant, ex);
+			for (ListenableFutureTask<?> task : batch.tasks) {
+				task.fail(ex);
+			}
+		}
+	}
+
+	private final class Flush implements Runnable {
+
+		private final Batch batch;
+
+		private Flush(Batch batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+			synchronized (pending) {
+				if (pending.get(this.batch.tenant) != this.batch) {
+					// Already dispatched because it was full or flushed
+					return;
+				}
+				pending.remove(this.batch.tenant);
+			}
+			dispatch(this.batch);
+		}
+	}
+
+	private static final class Batch {
+
+		private final TenantContext tenant;
+		private final List<ListenableFutureTask<?>> tasks = new ArrayList<>();
+		private ScheduledFuture<?> linger;
+
+		private Batch(TenantContext tenant) {
+			this.tenant = tenant;
+		}
+	}
+
+	/**
+	 * Runs all tasks of a batch within a single pass of the interceptors. When an interceptor fails
+	 * the interceptors that already ran are unwound, so the tenant context does not leak.
+	 */
+	private static final class BatchRunnable implements Runnable {
+
+		private final List<ListenableFutureTask<?>> tasks;
+		private final TaskInterceptorChain interceptorChain;
+		private final Logger logger = LoggerFactory.getLogger(getClass());
+
+		private BatchRunnable(List<ListenableFutureTask<?>> tasks, TaskInterceptorChain interceptorChain) {
+			this.tasks = Collections.unmodifiableList(tasks);
+			this.interceptorChain = interceptorChain;
+		}
+
+		@Override
+		public void run() {
+			final int applied;
+			try {
+				applied = this.interceptorChain.applyBeforeTask();
+			} catch (Exception ex) {
+				logger.error("Failed to prepare batch of {} tasks", this.tasks.size(), ex);
+				for (ListenableFutureTask<?> task : this.tasks) {
+					task.fail(ex);
+				}
+				return;
+			}
+			Throwable failure = null;
+			try {
+				for (ListenableFutureTask<?> task : this.tasks) {
+					task.run();
+					if (failure == null) {
+						failure = failureOf(task);
+					}
+				}
+			} finally {
+				try {
+					this.interceptorChain.applyAfterTask(applied, failure);
+				} catch (Exception ex) {
+					logger.error("Failed to complete batch of {} tasks", this.tasks.size(), ex);
+				}
+			}
+		}
+
+		private static Throwable failureOf(ListenableFutureTask<?> task) {
+			try {
+				task.get();
+				return null;
+			} catch (ExecutionException ex) {
+				return ex.getCause();
+			} catch (InterruptedException | CancellationException ex) {
+				return null;
+			}
+		}
+	}
+}
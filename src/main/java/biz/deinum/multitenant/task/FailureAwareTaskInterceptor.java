@@ -0,0 +1,11 @@
+package biz.deinum.multitenant.task;
+
+/**
+ * {@link TaskInterceptor} which is told when the task failed. The {@link TaskInterceptorChain} calls
+ * {@link #onFailure(Throwable)} right before {@link #afterExecution()}, on the thread of the task, so
+ * for instance resources which are unusable after an exception can be discarded instead of kept.
+ */
+public interface FailureAwareTaskInterceptor extends TaskInterceptor {
+
+	void onFailure(Throwable ex);
+}
@@ -0,0 +1,21 @@
+package biz.deinum.multitenant.task;
+
+/**
+ * Progress callback for a {@link TenantFanOutExecutor} run. Callbacks are invoked on the thread that
+ * started the fan-out, one tenant at a time, so implementations need not be thread-safe.
+ *
+ * @param <T> The result type of the task
+ */
+public interface FanOutListener<T> {
+
+	/**
+	 * Invoked when the task completed successfully for the given tenant.
+	 */
+	void onSuccess(String tenant, T result, int completed, int total);
+
+	/**
+	 * Invoked when the task failed or timed out for the given tenant. A timeout is reported as a
+	 * {@link java.util.concurrent.TimeoutException}.
+	 */
+	void onFailure(String tenant, Throwable ex, int completed, int total);
+}
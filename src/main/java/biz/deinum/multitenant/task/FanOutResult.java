@@ -0,0 +1,48 @@
+package biz.deinum.multitenant.task;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aggregated outcome of a {@link TenantFanOutExecutor} run: the result for every tenant the task
+ * completed for, and the cause for every tenant it failed or timed out for.
+ *
+ * @param <T> The result type of the task
+ */
+public class FanOutResult<T> {
+
+	private final Map<String, T> results = new LinkedHashMap<>();
+	private final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+	void addResult(String tenant, T result) {
+		this.results.put(tenant, result);
+	}
+
+	void addFailure(String tenant, Throwable ex) {
+		this.failures.put(tenant, ex);
+	}
+
+	/**
+	 * The results keyed by tenant, in order of completion.
+	 */
+	public Map<String, T> getResults() {
+		return Collections.unmodifiableMap(this.results);
+	}
+
+	/**
+	 * The failures keyed by tenant, in order of completion.
+	 */
+	public Map<String, Throwable> getFailures() {
+		return Collections.unmodifiableMap(this.failures);
+	}
+
+	public boolean isSuccessful() {
+		return this.failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "FanOutResult [succeeded=" + this.results.size() + ", failed=" + this.failures.keySet() + "]";
+	}
+}
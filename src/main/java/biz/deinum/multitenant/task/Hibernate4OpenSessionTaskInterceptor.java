@@ -1,6 +1,11 @@
 package biz.deinum.multitenant.task;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -8,24 +13,84 @@ import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.orm.hibernate4.SessionFactoryUtils;
 import org.springframework.orm.hibernate4.SessionHolder;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import biz.deinum.multitenant.core.ContextHolder;
 import biz.deinum.multitenant.task.TaskInterceptor;
 
-public class Hibernate4OpenSessionTaskInterceptor implements TaskInterceptor {
+/**
+ * {@link TaskInterceptor} which binds a Hibernate {@code Session} to the thread executing the task.
+ * 
+ * <p>When a {@code Session} is already bound for the {@code SessionFactory} (for instance because the
+ * task runs on the calling thread, or inside another interceptor chain) that session is used and left
+ * bound after the task.</p>
+ * 
+ * <p>By default a new {@code Session} is opened and closed for every task. When the
+ * <code>maxReuseCount</code> is set higher than 1 the {@code Session} is kept open on the worker thread
+ * and reused by consecutive tasks of the same tenant, until it has been used <code>maxReuseCount</code>
+ * times. Between tasks the {@code Session} is cleared (unless <code>clearBetweenTasks</code> is switched
+ * off), so no entities leak from one task into the next. A {@code Session} is never kept after a
+ * failed task, Hibernate requires a session to be discarded after an exception. A kept {@code Session}
+ * stays open on an idle worker thread; call {@link #releaseSession()} from the worker thread to close it
+ * early. Sessions still kept open when the interceptor is destroyed are closed by {@link #destroy()}.</p>
+ * 
+ * <p>This class is thread-safe, all per-execution state is kept per thread.</p>
+ */
+public class Hibernate4OpenSessionTaskInterceptor implements FailureAwareTaskInterceptor, DisposableBean {
 
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private final SessionFactory sessionFactory;
 
+	/** Per (nested) execution on the current thread: whether it participates in an already bound session */
+	private final ThreadLocal<Deque<Boolean>> participating = new ThreadLocal<Deque<Boolean>>() {
+		@Override
+		protected Deque<Boolean> initialValue() {
+			return new ArrayDeque<Boolean>();
+		}
+	};
+
+	/** The session kept open for reuse on the current thread */
+	private final ThreadLocal<ReusableSession> reusableSession = new ThreadLocal<ReusableSession>();
+
+	/** Whether the task about to be unwound on the current thread failed */
+	private final ThreadLocal<Boolean> failed = new ThreadLocal<Boolean>();
+
+	/** All sessions kept for reuse, on any thread, so they can be closed on destroy */
+	private final Set<ReusableSession> reusableSessions =
+			Collections.newSetFromMap(new ConcurrentHashMap<ReusableSession, Boolean>());
+
+	private int maxReuseCount = 1;
+
+	private boolean clearBetweenTasks = true;
+
 	public Hibernate4OpenSessionTaskInterceptor(SessionFactory sessionFactory) {
 		Objects.requireNonNull(sessionFactory);
 		this.sessionFactory = sessionFactory;
 	}
+
+	/**
+	 * Set the maximum number of consecutive tasks of the same tenant that may use the same
+	 * {@code Session} on a worker thread. Default is 1, which opens a new {@code Session} per task.
+	 */
+	public void setMaxReuseCount(int maxReuseCount) {
+		if (maxReuseCount < 1) {
+			throw new IllegalArgumentException("maxReuseCount must be at least 1");
+		}
+		this.maxReuseCount = maxReuseCount;
+	}
+
+	/**
+	 * Whether a reused {@code Session} is cleared after each task. Default is <code>true</code>.
+	 */
+	public void setClearBetweenTasks(boolean clearBetweenTasks) {
+		this.clearBetweenTasks = clearBetweenTasks;
+	}
 	
 	/**
 	 * Open a new Hibernate {@code Session} according and bind it to the thread via the
@@ -33,24 +98,104 @@ public class Hibernate4OpenSessionTaskInterceptor implements TaskInterceptor {
 	 */
 	@Override
 	public void beforeExecution() throws DataAccessException {
-		logger.debug("Opening Hibernate Session in HibernateOpenSessionTaskInterceptor");
-		Session session = openSession();
+		if (TransactionSynchronizationManager.hasResource(this.sessionFactory)) {
+			logger.debug("Participating in existing Hibernate Session in HibernateOpenSessionTaskInterceptor");
+			this.participating.get().push(Boolean.TRUE);
+			return;
+		}
+		Session session = obtainSession();
 		SessionHolder sessionHolder = new SessionHolder(session);
 		TransactionSynchronizationManager.bindResource(this.sessionFactory, sessionHolder);
+		this.participating.get().push(Boolean.FALSE);
 	}
 
 	/**
-	 * Unbind the Hibernate {@code Session} from the thread and close it).
+	 * The task failed, its {@code Session} is closed instead of kept for reuse.
+	 */
+	@Override
+	public void onFailure(Throwable ex) {
+		this.failed.set(Boolean.TRUE);
+	}
+
+	/**
+	 * Unbind the Hibernate {@code Session} from the thread and close it (or keep it for reuse).
 	 * @see org.springframework.transaction.support.TransactionSynchronizationManager
 	 */
 	@Override
 	public void afterExecution() throws DataAccessException {
+		boolean taskFailed = this.failed.get() != null;
+		this.failed.remove();
+		Deque<Boolean> executions = this.participating.get();
+		Boolean participate = executions.poll();
+		if (executions.isEmpty()) {
+			this.participating.remove();
+		}
+		if (participate == null || participate) {
+			return;
+		}
 		SessionHolder sessionHolder =
 				(SessionHolder) TransactionSynchronizationManager.unbindResource(this.sessionFactory);
+		ReusableSession reusable = this.reusableSession.get();
+		if (reusable != null && reusable.session == sessionHolder.getSession()) {
+			if (!taskFailed && reusable.uses < this.maxReuseCount && reusable.session.isOpen()) {
+				if (this.clearBetweenTasks) {
+					reusable.session.clear();
+				}
+				return;
+			}
+			this.reusableSession.remove();
+			this.reusableSessions.remove(reusable);
+		}
 		logger.debug("Closing Hibernate Session in HibernateOpenSessionTaskInterceptor");
 		SessionFactoryUtils.closeSession(sessionHolder.getSession());
 	}
 
+	/**
+	 * Close the {@code Session} kept for reuse on the current thread, if any.
+	 */
+	public void releaseSession() {
+		ReusableSession reusable = this.reusableSession.get();
+		this.reusableSession.remove();
+		if (reusable != null && this.reusableSessions.remove(reusable)) {
+			logger.debug("Closing reused Hibernate Session in HibernateOpenSessionTaskInterceptor");
+			SessionFactoryUtils.closeSession(reusable.session);
+		}
+	}
+
+	/**
+	 * Close the sessions kept for reuse on all threads. Only call this when no more tasks run, a
+	 * {@code Session} is not thread-safe.
+	 */
+	@Override
+	public void destroy() {
+		for (ReusableSession reusable : this.reusableSessions) {
+			if (this.reusableSessions.remove(reusable)) {
+				logger.debug("Closing reused Hibernate Session in HibernateOpenSessionTaskInterceptor");
+				SessionFactoryUtils.closeSession(reusable.session);
+			}
+		}
+	}
+
+	private Session obtainSession() throws DataAccessResourceFailureException {
+		if (this.maxReuseCount == 1) {
+			return openSession();
+		}
+		String tenant = ContextHolder.getContext();
+		ReusableSession reusable = this.reusableSession.get();
+		if (reusable != null) {
+			if (Objects.equals(tenant, reusable.tenant) && reusable.session.isOpen()) {
+				reusable.uses++;
+				logger.debug("Reusing Hibernate Session in HibernateOpenSessionTaskInterceptor");
+				return reusable.session;
+			}
+			releaseSession();
+		}
+		reusable = new ReusableSession(openSession(), tenant);
+		this.reusableSession.set(reusable);
+		this.reusableSessions.add(reusable);
+		return reusable.session;
+	}
+
 	/**
 	 * Open a Session for the SessionFactory that this interceptor uses.
 	 * <p>The default implementation delegates to the {@link SessionFactory#openSession}
@@ -60,6 +205,7 @@ public class Hibernate4OpenSessionTaskInterceptor implements TaskInterceptor {
 	 * @see org.hibernate.FlushMode#MANUAL
 	 */
 	private Session openSession() throws DataAccessResourceFailureException {
+		logger.debug("Opening Hibernate Session in HibernateOpenSessionTaskInterceptor");
 		try {
 			Session session = this.sessionFactory.openSession();
 			session.setFlushMode(FlushMode.MANUAL);
@@ -69,4 +215,16 @@ public class Hibernate4OpenSessionTaskInterceptor implements TaskInterceptor {
 			throw new DataAccessResourceFailureException("Could not open Hibernate Session", ex);
 		}
 	}
+
+	private static final class ReusableSession {
+
+		private final Session session;
+		private final String tenant;
+		private int uses = 1;
+
+		private ReusableSession(Session session, String tenant) {
+			this.session = session;
+			this.tenant = tenant;
+		}
+	}
 }
@@ -8,14 +8,19 @@ import java.util.concurrent.Future;
 
 import org.springframework.core.task.AsyncTaskExecutor;
 
+import biz.deinum.multitenant.core.ContextHolder;
+
 /**
  * Spring {@link AsyncTaskExecutor} implementation that allows you to attached interceptors
  * that will execute before and after some task executes.
  * 
+ * Callbacks and dependent stages of the futures returned by {@link #submitListenable(Callable)} run
+ * under the tenant context of the submitting thread.
+ * 
  * @author Joe Laudadio <Joe.Laudadio@AltegraHealth.com>
  *
  */
-public class InterceptableAsyncTaskExecutor implements AsyncTaskExecutor {
+public class InterceptableAsyncTaskExecutor implements ListenableAsyncTaskExecutor {
 
 	private final AsyncTaskExecutor delegateTaskExecutor;
 	private final List<TaskInterceptor> interceptors;
@@ -58,6 +63,22 @@ public class InterceptableAsyncTaskExecutor implements AsyncTaskExecutor {
 		return this.delegateTaskExecutor.submit(wrapped);
 	}
 	
+	@Override
+	public ListenableTaskFuture<?> submitListenable(Runnable task) {
+		Objects.requireNonNull(task);
+		ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(wrap(task), null, ContextHolder.getTenantContext());
+		this.delegateTaskExecutor.execute(future);
+		return future;
+	}
+
+	@Override
+	public <T> ListenableTaskFuture<T> submitListenable(Callable<T> task) {
+		Objects.requireNonNull(task);
+		ListenableFutureTask<T> future = new ListenableFutureTask<T>(wrap(task), ContextHolder.getTenantContext());
+		this.delegateTaskExecutor.execute(future);
+		return future;
+	}
+	
 	private TaskInterceptorChain buildInterceptorChain() {
 		TaskInterceptorChain chain = new TaskInterceptorChain(this.interceptors);
 		return chain;
@@ -4,6 +4,9 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextLeakDetector;
+
 /**
  * A {@link Callable} implementation that allows you to wrap {@link TaskInterceptor}s around
  * the execution of some other {@link Callable} task.
@@ -29,16 +32,25 @@ class InterceptableCallable<V> implements Callable<V> {
 	
 	@Override
 	public V call() throws Exception {
-		if (this.interceptorChain != null) {
-			this.interceptorChain.applyBeforeTask();
-		}
+		final boolean detectLeaks = ContextLeakDetector.isEnabled();
+		final String context = detectLeaks ? ContextHolder.getContext() : null;
+		// A failing interceptor unwinds the ones already applied itself
+		final int applied = this.interceptorChain != null ? this.interceptorChain.applyBeforeTask() : 0;
 		
-		V result = this.task.call();
-		
-		if (this.interceptorChain != null) {
-			this.interceptorChain.applyAfterTask();
+		Throwable failure = null;
+		try {
+			return this.task.call();
+		} catch (Exception | Error ex) {
+			failure = ex;
+			throw ex;
+		} finally {
+			// Always unwind the chain, a failing task must not leave e.g. its tenant context behind
+			if (this.interceptorChain != null) {
+				this.interceptorChain.applyAfterTask(applied, failure);
+			}
+			if (detectLeaks) {
+				ContextLeakDetector.checkRestored(context, "the end of a task");
+			}
 		}
-		
-		return result;
 	}
 }
\ No newline at end of file
@@ -6,6 +6,9 @@ import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextLeakDetector;
+
 /**
  * A {@link Runnable} implementation that allows you to wrap {@link TaskInterceptor}s around
  * the execution of some other {@link Runnable} task.
@@ -31,15 +34,26 @@ class InterceptableRunnable implements Runnable {
 	
 	@Override
 	public void run() {
+		final boolean detectLeaks = ContextLeakDetector.isEnabled();
+		final String context = detectLeaks ? ContextHolder.getContext() : null;
 		try {
-			if (this.interceptorChain != null) {
-				this.interceptorChain.applyBeforeTask();
-			}
-			
-			this.task.run();
+			// A failing interceptor unwinds the ones already applied itself
+			final int applied = this.interceptorChain != null ? this.interceptorChain.applyBeforeTask() : 0;
 			
-			if (this.interceptorChain != null) {
-				this.interceptorChain.applyAfterTask();
+			Throwable failure = null;
+			try {
+				this.task.run();
+			} catch (RuntimeException | Error ex) {
+				failure = ex;
+				throw ex;
+			} finally {
+				// Always unwind the chain, a failing task must not leave e.g. its tenant context behind
+				if (this.interceptorChain != null) {
+					this.interceptorChain.applyAfterTask(applied, failure);
+				}
+				if (detectLeaks) {
+					ContextLeakDetector.checkRestored(context, "the end of a task");
+				}
 			}
 		} catch (Exception ex) {
 			logger.error("Failed to execute task", ex);
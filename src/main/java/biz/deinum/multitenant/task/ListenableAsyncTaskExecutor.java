@@ -0,0 +1,17 @@
+package biz.deinum.multitenant.task;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+
+/**
+ * Extension of the {@link AsyncTaskExecutor} which returns {@link ListenableTaskFuture}s, so that
+ * callers can compose work instead of blocking on the result.
+ *
+ */
+public interface ListenableAsyncTaskExecutor extends AsyncTaskExecutor {
+
+	ListenableTaskFuture<?> submitListenable(Runnable task);
+
+	<T> ListenableTaskFuture<T> submitListenable(Callable<T> task);
+}
@@ -0,0 +1,217 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@link FutureTask} based implementation of the {@link ListenableTaskFuture}. Listeners are wrapped
+ * with a {@link MultitenantContextTaskInterceptor} for the tenant context given at construction time.
+ *
+ * @param <V> The result type of the task
+ */
+class ListenableFutureTask<V> extends FutureTask<V> implements ListenableTaskFuture<V> {
+
+	private final TenantContext tenantContext;
+	private final List<Listener> listeners = new ArrayList<>();
+	private boolean completed = false;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ListenableFutureTask(Callable<V> task, TenantContext tenantContext) {
+		super(task);
+		this.tenantContext = tenantContext;
+	}
+
+	public ListenableFutureTask(Runnable task, V result, TenantContext tenantContext) {
+		super(task, result);
+		this.tenantContext = tenantContext;
+	}
+
+	public TenantContext getTenantContext() {
+		return this.tenantContext;
+	}
+
+	@Override
+	public void addCallback(TaskCallback<? super V> callback) {
+		addCallback(callback, null);
+	}
+
+	@Override
+	public void addCallback(final TaskCallback<? super V> callback, Executor executor) {
+		Objects.requireNonNull(callback);
+		addListener(new Runnable() {
+			@Override
+			public void run() {
+				V result;
+				try {
+					result = get();
+				} catch (ExecutionException ex) {
+					callback.onFailure(ex.getCause());
+					return;
+				} catch (CancellationException ex) {
+					callback.onFailure(ex);
+					return;
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					callback.onFailure(ex);
+					return;
+				}
+				callback.onSuccess(result);
+			}
+		}, executor, null);
+	}
+
+	@Override
+	public <R> ListenableTaskFuture<R> transform(final TaskFunction<? super V, ? extends R> function, Executor executor) {
+		Objects.requireNonNull(function);
+		ListenableFutureTask<R> dependent = new ListenableFutureTask<R>(new Callable<R>() {
+			@Override
+			public R call() throws Exception {
+				V input;
+				try {
+					input = get();
+				} catch (ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw ex;
+				}
+				return function.apply(input);
+			}
+		}, this.tenantContext);
+		addListener(dependent, executor, dependent);
+		return dependent;
+	}
+
+	@Override
+	public <R> ListenableTaskFuture<R> compose(
+			final TaskFunction<? super V, ? extends ListenableTaskFuture<? extends R>> function, Executor executor) {
+		Objects.requireNonNull(function);
+		final ListenableFutureTask<R> dependent = new ListenableFutureTask<R>(new Callable<R>() {
+			@Override
+			public R call() {
+				throw new IllegalStateException("A composed stage is completed by the future it depends on");
+			}
+		}, this.tenantContext);
+		addListener(new Runnable() {
+			@Override
+			public void run() {
+				ListenableTaskFuture<? extends R> next;
+				try {
+					next = function.apply(get());
+				} catch (ExecutionException ex) {
+					dependent.fail(ex.getCause());
+					return;
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					dependent.fail(ex);
+					return;
+				} catch (Exception ex) {
+					dependent.fail(ex);
+					return;
+				}
+				if (next == null) {
+					dependent.fail(new NullPointerException("The function returned no future"));
+					return;
+				}
+				next.addCallback(new TaskCallback<R>() {
+					@Override
+					public void onSuccess(R result) {
+						dependent.complete(result);
+					}
+
+					@Override
+					public void onFailure(Throwable ex) {
+						dependent.fail(ex);
+					}
+				});
+			}
+		}, executor, dependent);
+		return dependent;
+	}
+
+	/**
+	 * Complete this future with the given value without running the task.
+	 */
+	void complete(V value) {
+		set(value);
+	}
+
+	/**
+	 * Complete this future exceptionally without running the task.
+	 */
+	void fail(Throwable ex) {
+		setException(ex);
+	}
+
+	@Override
+	protected void done() {
+		List<Listener> toNotify;
+		synchronized (this.listeners) {
+			this.completed = true;
+			toNotify = new ArrayList<>(this.listeners);
+			this.listeners.clear();
+		}
+		for (Listener listener : toNotify) {
+			listener.fire();
+		}
+	}
+
+	/**
+	 * Register the listener, when given the dependent future is failed if the listener cannot be
+	 * dispatched, so it does not wait forever.
+	 */
+	private void addListener(Runnable listener, Executor executor, ListenableFutureTask<?> dependent) {
+		Runnable contextual = new InterceptableRunnable(listener,
+				Collections.<TaskInterceptor>singletonList(new MultitenantContextTaskInterceptor(this.tenantContext)));
+		Listener registered = new Listener(contextual, executor, dependent);
+		synchronized (this.listeners) {
+			if (!this.completed) {
+				this.listeners.add(registered);
+				return;
+			}
+		}
+		registered.fire();
+	}
+
+	private final class Listener {
+
+		private final Runnable task;
+		private final Executor executor;
+		private final ListenableFutureTask<?> dependent;
+
+		private Listener(Runnable task, Executor executor, ListenableFutureTask<?> dependent) {
+			this.task = task;
+			this.executor = executor;
+			this.dependent = dependent;
+		}
+
+		private void fire() {
+			try {
+				if (this.executor != null) {
+					this.executor.execute(this.task);
+				} else {
+					this.task.run();
+				}
+			} catch (RuntimeException ex) {
+				if (this.dependent != null) {
+					this.dependent.fail(ex);
+				} else {
+					logger.error("Failed to notify listener of task completion", ex);
+				}
+			}
+		}
+	}
+}
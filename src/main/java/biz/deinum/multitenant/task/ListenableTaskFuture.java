@@ -0,0 +1,43 @@
+package biz.deinum.multitenant.task;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * {@link Future} that accepts completion callbacks and dependent stages instead of forcing the caller
+ * to block in {@link #get()}. Every callback and every dependent stage runs under the tenant context
+ * that was captured when the original task was submitted, regardless of which thread or executor
+ * completes it.
+ *
+ * @param <V> The result type of the task
+ * @see ListenableAsyncTaskExecutor
+ */
+public interface ListenableTaskFuture<V> extends Future<V> {
+
+	/**
+	 * Register a callback which is invoked on the completing thread (or immediately on the calling
+	 * thread if the task already completed).
+	 */
+	void addCallback(TaskCallback<? super V> callback);
+
+	/**
+	 * Register a callback which is handed to the given {@link Executor} once the task completes.
+	 */
+	void addCallback(TaskCallback<? super V> callback, Executor executor);
+
+	/**
+	 * Create a dependent stage which applies the given function to the result of this future. The
+	 * function runs on the given {@link Executor}, or on the completing thread when the executor is
+	 * <code>null</code>. A failure of this future is propagated to the dependent stage.
+	 */
+	<R> ListenableTaskFuture<R> transform(TaskFunction<? super V, ? extends R> function, Executor executor);
+
+	/**
+	 * Create a dependent stage which applies the given asynchronous function to the result of this
+	 * future and completes with the outcome of the future it returns. The function runs on the given
+	 * {@link Executor}, or on the completing thread when the executor is <code>null</code>. A failure
+	 * of this future, of the function or of the returned future is propagated to the dependent stage.
+	 */
+	<R> ListenableTaskFuture<R> compose(TaskFunction<? super V, ? extends ListenableTaskFuture<? extends R>> function,
+			Executor executor);
+}
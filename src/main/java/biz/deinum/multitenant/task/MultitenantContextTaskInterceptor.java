@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
 
 /**
  * {@link TaskInterceptor} implementation that manages the multi-tenant context 
@@ -15,16 +16,16 @@ import biz.deinum.multitenant.core.ContextHolder;
  */
 public class MultitenantContextTaskInterceptor implements TaskInterceptor {
 
-	private final String tenantContext;
+	private final TenantContext tenantContext;
 	
-	private String originalTenantContext;
+	private TenantContext originalTenantContext;
 	
 	/**
 	 * Creates an instance that will use the instantiating thread's tenant context during the
 	 *execution of the task. 
 	 */
 	public MultitenantContextTaskInterceptor() {
-		this(ContextHolder.getContext());
+		this(ContextHolder.getTenantContext());
 	}
 	
 	/**
@@ -34,22 +35,30 @@ public class MultitenantContextTaskInterceptor implements TaskInterceptor {
 	 * value here if you don't wish the task to execute under any specific tenant context.
 	 */
 	public MultitenantContextTaskInterceptor(String tenantContext) {
+		this(TenantContext.of(tenantContext));
+	}
+	
+	/**
+	 * Creates an instance that will place the given tenant context, including its attributes, into the
+	 * {@link ContextHolder}.
+	 */
+	MultitenantContextTaskInterceptor(TenantContext tenantContext) {
 		this.tenantContext = tenantContext;
 	}
 	
 	
 	@Override
 	public void beforeExecution() throws Exception {
-		this.originalTenantContext = ContextHolder.getContext();
+		this.originalTenantContext = ContextHolder.getTenantContext();
 		logger.debug("Current tenant context is '{}'", this.originalTenantContext);
 		logger.debug("Setting tenant context to '{}'", this.tenantContext);
-		ContextHolder.setContext(this.tenantContext);
+		ContextHolder.setTenantContext(this.tenantContext);
 	}
 
 	@Override
 	public void afterExecution() throws Exception {
 		logger.debug("Resetting tenant context by to '{}'", this.originalTenantContext);
-		ContextHolder.setContext(this.originalTenantContext);
+		ContextHolder.setTenantContext(this.originalTenantContext);
 	}
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -11,6 +11,7 @@ import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
 
 /**
  * Spring {@link TaskExecutor} implementation that is aware of multitenant context and takes
@@ -18,10 +19,13 @@ import biz.deinum.multitenant.core.ContextHolder;
  * execution.  The executation task's tenant context is inherited from whatever the tenant context
  * is on the thread that calls {@link #execute(Runnable)}.
  * 
+ * The futures returned by {@link #submitListenable(Callable)} run their callbacks and dependent
+ * stages under that same tenant context.
+ * 
  * @author Joe Laudadio <Joe.Laudadio@AltegraHealth.com>
  *
  */
-public class MultitenantTaskExecutor implements AsyncTaskExecutor {
+public class MultitenantTaskExecutor implements ListenableAsyncTaskExecutor {
 
 	private final AsyncTaskExecutor delegate;
 	
@@ -60,6 +64,24 @@ public class MultitenantTaskExecutor implements AsyncTaskExecutor {
 		return this.delegate.submit(c);
 	}
 	
+	@Override
+	public ListenableTaskFuture<?> submitListenable(Runnable task) {
+		Objects.requireNonNull(task);
+		TenantContext currentContext = ContextHolder.getTenantContext();
+		ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(wrap(task, currentContext), null, currentContext);
+		this.delegate.execute(future);
+		return future;
+	}
+
+	@Override
+	public <T> ListenableTaskFuture<T> submitListenable(Callable<T> task) {
+		Objects.requireNonNull(task);
+		TenantContext currentContext = ContextHolder.getTenantContext();
+		ListenableFutureTask<T> future = new ListenableFutureTask<T>(wrap(task, currentContext), currentContext);
+		this.delegate.execute(future);
+		return future;
+	}
+	
 	private Runnable wrap(Runnable task) {
 		TaskInterceptor interceptor = createInterceptor();
 		return new InterceptableRunnable(task, Collections.singletonList(interceptor));
@@ -70,8 +92,18 @@ public class MultitenantTaskExecutor implements AsyncTaskExecutor {
 		return new InterceptableCallable(task, Collections.singletonList(interceptor));
 	}
 	
+	private Runnable wrap(Runnable task, TenantContext context) {
+		TaskInterceptor interceptor = new MultitenantContextTaskInterceptor(context);
+		return new InterceptableRunnable(task, Collections.singletonList(interceptor));
+	}
+	
+	private <V> Callable<V> wrap(Callable<V> task, TenantContext context) {
+		TaskInterceptor interceptor = new MultitenantContextTaskInterceptor(context);
+		return new InterceptableCallable<V>(task, Collections.singletonList(interceptor));
+	}
+	
 	private MultitenantContextTaskInterceptor createInterceptor() {
-		String currentContext = ContextHolder.getContext();
+		TenantContext currentContext = ContextHolder.getTenantContext();
 		logger.debug("current context = {}", currentContext);
 		return new MultitenantContextTaskInterceptor(currentContext);		
 	}
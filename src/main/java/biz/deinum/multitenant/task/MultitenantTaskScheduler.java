@@ -0,0 +1,227 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * Spring {@link TaskScheduler} implementation that takes care of setting the tenant context in the
+ * {@link ContextHolder} for every execution of a scheduled task. The tenant context is either the fixed
+ * context this scheduler was created with or, when there is none, the context of the thread that
+ * schedules the task.
+ * 
+ * Next to the regular {@link TaskScheduler} methods it supports per-tenant schedules: the same task is
+ * scheduled once for every tenant, and the executions are spread evenly across the period with an
+ * optional random jitter, so that a large number of tenants does not fire at the same moment.
+ *
+ */
+public class MultitenantTaskScheduler implements TaskScheduler {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final TaskScheduler delegate;
+	private final TenantContext tenantContext;
+	private final boolean fixedContext;
+	private final Random random = new Random();
+	private long jitter = 0;
+
+	/**
+	 * Creates an instance that runs tasks under the tenant context of the thread that schedules them.
+	 */
+	public MultitenantTaskScheduler(TaskScheduler delegate) {
+		Objects.requireNonNull(delegate);
+		this.delegate = delegate;
+		this.tenantContext = null;
+		this.fixedContext = false;
+	}
+
+	/**
+	 * Creates an instance that runs all tasks under the given tenant context, for instance to schedule
+	 * {@code @Scheduled} methods for a single tenant.
+	 */
+	public MultitenantTaskScheduler(TaskScheduler delegate, String tenantContext) {
+		Objects.requireNonNull(delegate);
+		this.delegate = delegate;
+		this.tenantContext = TenantContext.of(tenantContext);
+		this.fixedContext = true;
+	}
+
+	/**
+	 * Set the maximum random jitter in milliseconds added to the offset of each tenant in a per-tenant
+	 * schedule. Default is 0 (tenants are spread evenly without jitter).
+	 */
+	public void setJitter(long jitter) {
+		if (jitter < 0) {
+			throw new IllegalArgumentException("jitter must not be negative");
+		}
+		this.jitter = jitter;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+		return this.delegate.schedule(wrap(task, currentContext()), trigger);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+		return this.delegate.schedule(wrap(task, currentContext()), startTime);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+		return this.delegate.scheduleAtFixedRate(wrap(task, currentContext()), startTime, period);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+		return this.delegate.scheduleAtFixedRate(wrap(task, currentContext()), period);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+		return this.delegate.scheduleWithFixedDelay(wrap(task, currentContext()), startTime, delay);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+		return this.delegate.scheduleWithFixedDelay(wrap(task, currentContext()), delay);
+	}
+
+	/**
+	 * Schedule the task at a fixed rate for every given tenant. The first execution of each tenant is
+	 * offset within the first period, so that the executions are spread across the period.
+	 * 
+	 * @return the scheduled futures keyed by tenant
+	 */
+	public Map<String, ScheduledFuture<?>> schedulePerTenantAtFixedRate(Collection<String> tenants, Runnable task, long period) {
+		Objects.requireNonNull(task);
+		List<String> uniqueTenants = new ArrayList<>(new LinkedHashSet<>(tenants));
+		Map<String, ScheduledFuture<?>> futures = new LinkedHashMap<>();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < uniqueTenants.size(); i++) {
+			String tenant = uniqueTenants.get(i);
+			long offset = offset(i, uniqueTenants.size(), period);
+			logger.debug("Scheduling task for tenant '{}' with offset {} ms", tenant, offset);
+			futures.put(tenant, this.delegate.scheduleAtFixedRate(wrap(task, TenantContext.of(tenant)), new Date(now + offset), period));
+		}
+		return Collections.unmodifiableMap(futures);
+	}
+
+	/**
+	 * Schedule the task with the given {@link Trigger} (for instance a cron trigger) for every given tenant.
+	 * The executions of the tenants are shifted by an offset within the given spread, which should not be
+	 * larger than the shortest interval of the trigger.
+	 * 
+	 * @return the scheduled futures keyed by tenant
+	 */
+	public Map<String, ScheduledFuture<?>> schedulePerTenant(Collection<String> tenants, Runnable task, Trigger trigger, long spread) {
+		Objects.requireNonNull(task);
+		Objects.requireNonNull(trigger);
+		List<String> uniqueTenants = new ArrayList<>(new LinkedHashSet<>(tenants));
+		Map<String, ScheduledFuture<?>> futures = new LinkedHashMap<>();
+		for (int i = 0; i < uniqueTenants.size(); i++) {
+			String tenant = uniqueTenants.get(i);
+			long offset = offset(i, uniqueTenants.size(), spread);
+			logger.debug("Scheduling task for tenant '{}' with offset {} ms", tenant, offset);
+			futures.put(tenant, this.delegate.schedule(wrap(task, TenantContext.of(tenant)), new OffsetTrigger(trigger, offset)));
+		}
+		return Collections.unmodifiableMap(futures);
+	}
+
+	long offset(int index, int count, long period) {
+		long offset = (period * index) / count;
+		if (this.jitter > 0) {
+			synchronized (this.random) {
+				offset += (long) (this.random.nextDouble() * this.jitter);
+			}
+		}
+		return offset;
+	}
+
+	private TenantContext currentContext() {
+		return (this.fixedContext ? this.tenantContext : ContextHolder.getTenantContext());
+	}
+
+	private Runnable wrap(Runnable task, TenantContext context) {
+		Objects.requireNonNull(task);
+		return new ContextRunnable(task, context);
+	}
+
+	/**
+	 * Periodic tasks are executed repeatedly, so a fresh (not thread-safe) interceptor is created for
+	 * every execution.
+	 */
+	private static final class ContextRunnable implements Runnable {
+
+		private final Runnable task;
+		private final TenantContext tenantContext;
+
+		private ContextRunnable(Runnable task, TenantContext tenantContext) {
+			this.task = task;
+			this.tenantContext = tenantContext;
+		}
+
+		@Override
+		public void run() {
+			TaskInterceptor interceptor = new MultitenantContextTaskInterceptor(this.tenantContext);
+			new InterceptableRunnable(this.task, Collections.singletonList(interceptor)).run();
+		}
+	}
+
+	/**
+	 * {@link Trigger} which shifts the execution times of the delegate trigger by a fixed offset. The
+	 * delegate is presented with unshifted times, so it computes its next execution time as usual.
+	 */
+	static final class OffsetTrigger implements Trigger {
+
+		private final Trigger delegate;
+		private final long offset;
+
+		OffsetTrigger(Trigger delegate, long offset) {
+			this.delegate = delegate;
+			this.offset = offset;
+		}
+
+		@Override
+		public Date nextExecutionTime(final TriggerContext triggerContext) {
+			Date next = this.delegate.nextExecutionTime(new TriggerContext() {
+				@Override
+				public Date lastScheduledExecutionTime() {
+					return shift(triggerContext.lastScheduledExecutionTime(), -offset);
+				}
+
+				@Override
+				public Date lastActualExecutionTime() {
+					return shift(triggerContext.lastActualExecutionTime(), -offset);
+				}
+
+				@Override
+				public Date lastCompletionTime() {
+					return shift(triggerContext.lastCompletionTime(), -offset);
+				}
+			});
+			return shift(next, this.offset);
+		}
+
+		private static Date shift(Date date, long offset) {
+			return (date != null ? new Date(date.getTime() + offset) : null);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package biz.deinum.multitenant.task;
+
+/**
+ * Callback for the outcome of a {@link ListenableTaskFuture}. The callback is invoked under the
+ * tenant context that was active when the task was submitted.
+ *
+ * @param <V> The result type of the task
+ */
+public interface TaskCallback<V> {
+
+	void onSuccess(V result);
+
+	void onFailure(Throwable ex);
+}
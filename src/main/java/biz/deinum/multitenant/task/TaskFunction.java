@@ -0,0 +1,14 @@
+package biz.deinum.multitenant.task;
+
+/**
+ * Function applied to the result of a {@link ListenableTaskFuture} to produce a dependent result.
+ *
+ * @param <F> The input type
+ * @param <T> The output type
+ * @see ListenableTaskFuture#transform(TaskFunction, java.util.concurrent.Executor)
+ * @see ListenableTaskFuture#compose(TaskFunction, java.util.concurrent.Executor)
+ */
+public interface TaskFunction<F, T> {
+
+	T apply(F input) throws Exception;
+}
@@ -18,19 +18,73 @@ public class TaskInterceptorChain {
 		}
 	}
 	
-	public void applyBeforeTask() throws Exception {
-		for (TaskInterceptor taskInterceptor: this.interceptors) {
-			logger.trace("Invoking before-task interceptor {}'", taskInterceptor);
-			taskInterceptor.beforeExecution();
+	/**
+	 * Invoke the before-task interceptors in order. When one of them fails the interceptors that
+	 * already ran are unwound before the exception is rethrown.
+	 * 
+	 * @return the number of interceptors applied, to be passed to {@link #applyAfterTask(int)}
+	 */
+	public int applyBeforeTask() throws Exception {
+		int applied = 0;
+		try {
+			for (TaskInterceptor taskInterceptor: this.interceptors) {
+				logger.trace("Invoking before-task interceptor {}'", taskInterceptor);
+				taskInterceptor.beforeExecution();
+				applied++;
+			}
+		} catch (Exception ex) {
+			try {
+				applyAfterTask(applied);
+			} catch (Exception unwindEx) {
+				logger.error("Failed to unwind interceptors", unwindEx);
+			}
+			throw ex;
 		}
+		return applied;
 	}
 	
+	/**
+	 * Unwind all interceptors of the chain.
+	 */
 	public void applyAfterTask() throws Exception {
+		applyAfterTask(this.interceptors.size());
+	}
+	
+	/**
+	 * Unwind the first <code>applied</code> interceptors, starting with the last one. Every
+	 * interceptor is invoked, also when one fails; the first failure is rethrown afterwards.
+	 */
+	public void applyAfterTask(int applied) throws Exception {
+		applyAfterTask(applied, null);
+	}
+	
+	/**
+	 * Unwind the first <code>applied</code> interceptors after the task failed with the given
+	 * exception, {@link FailureAwareTaskInterceptor}s are told about the failure first.
+	 * 
+	 * @param taskFailure the exception of the task, or <code>null</code> when it succeeded
+	 */
+	public void applyAfterTask(int applied, Throwable taskFailure) throws Exception {
+		Exception failure = null;
 		// Unwind the chain by running the last interceptor executed and move backwards to the start
-		for (int i = this.interceptors.size() - 1; i >= 0; i--) {
+		for (int i = applied - 1; i >= 0; i--) {
 			TaskInterceptor taskInterceptor = this.interceptors.get(i);
 			logger.trace("Invoking after-task interceptor {}'", taskInterceptor);
-			taskInterceptor.afterExecution();
+			try {
+				if (taskFailure != null && taskInterceptor instanceof FailureAwareTaskInterceptor) {
+					((FailureAwareTaskInterceptor) taskInterceptor).onFailure(taskFailure);
+				}
+				taskInterceptor.afterExecution();
+			} catch (Exception ex) {
+				if (failure == null) {
+					failure = ex;
+				} else {
+					logger.error("Failed to invoke after-task interceptor {}", taskInterceptor, ex);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
 		}
 	}
 }
@@ -0,0 +1,222 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+/**
+ * Runs the same task once for every tenant in a list, each under its own tenant context, on a delegate
+ * {@link AsyncTaskExecutor}. At most <code>maxConcurrency</code> tenants are in flight at the same time.
+ * 
+ * Failures are isolated per tenant: a task failing, exceeding the per-tenant timeout or being rejected by
+ * the delegate executor is recorded in the {@link FanOutResult} and does not affect the other tenants.
+ * Timed out tasks are cancelled (interrupted).
+ * 
+ * Each tenant task is wrapped in an {@link InterceptableCallable} with a
+ * {@link MultitenantContextTaskInterceptor} for that tenant, followed by the configured additional
+ * {@link TaskInterceptor}s (for instance a {@link Hibernate4OpenSessionTaskInterceptor}).
+ * 
+ * The calling thread supervises the run: it dispatches tenants, enforces the timeouts and invokes the
+ * {@link FanOutListener}, and returns once every tenant has completed, failed or timed out.
+ *
+ */
+public class TenantFanOutExecutor {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final AsyncTaskExecutor delegate;
+	private final int maxConcurrency;
+	private final List<TaskInterceptor> interceptors;
+	private long timeout = 0;
+
+	public TenantFanOutExecutor(AsyncTaskExecutor delegate, int maxConcurrency) {
+		this(delegate, maxConcurrency, null);
+	}
+
+	public TenantFanOutExecutor(AsyncTaskExecutor delegate, int maxConcurrency, List<TaskInterceptor> taskInterceptors) {
+		Objects.requireNonNull(delegate);
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1");
+		}
+		this.delegate = delegate;
+		this.maxConcurrency = maxConcurrency;
+		this.interceptors = new ArrayList<>();
+		if (taskInterceptors != null) {
+			this.interceptors.addAll(taskInterceptors);
+		}
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a single tenant's task may run, measured from the moment it
+	 * starts running, time spent waiting in the queue of the delegate executor does not count. 0 (the
+	 * default) means no timeout.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public <T> FanOutResult<T> execute(Collection<String> tenants, Callable<T> task) throws InterruptedException {
+		return execute(tenants, task, null);
+	}
+
+	public <T> FanOutResult<T> execute(Collection<String> tenants, Callable<T> task, FanOutListener<? super T> listener)
+			throws InterruptedException {
+		Objects.requireNonNull(tenants);
+		Objects.requireNonNull(task);
+		List<String> pending = new ArrayList<>(new LinkedHashSet<>(tenants));
+		int total = pending.size();
+		FanOutResult<T> result = new FanOutResult<>();
+		BlockingQueue<Signal> signals = new LinkedBlockingQueue<>();
+		Map<String, InFlight<T>> inFlight = new LinkedHashMap<>();
+		int next = 0;
+		int completed = 0;
+		logger.debug("Fanning out task to {} tenants", total);
+		try {
+			while (completed < total) {
+				while (next < total && inFlight.size() < this.maxConcurrency) {
+					String tenant = pending.get(next++);
+					try {
+						inFlight.put(tenant, submit(tenant, task, signals));
+					} catch (RejectedExecutionException ex) {
+						logger.warn("Task for tenant '{}' was rejected", tenant, ex);
+						completed++;
+						result.addFailure(tenant, ex);
+						if (listener != null) {
+							listener.onFailure(tenant, ex, completed, total);
+						}
+					}
+				}
+				Signal signal = signals.poll(nextTimeout(inFlight), TimeUnit.NANOSECONDS);
+				if (signal != null && signal.started) {
+					InFlight<T> started = inFlight.get(signal.tenant);
+					if (started != null && this.timeout > 0) {
+						started.deadline = signal.time + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+					}
+				} else if (signal != null) {
+					InFlight<T> finished = inFlight.remove(signal.tenant);
+					if (finished != null) {
+						completed++;
+						collect(signal.tenant, finished.future, result, listener, completed, total);
+					}
+				}
+				completed += expire(inFlight, result, listener, completed, total);
+			}
+		} finally {
+			for (InFlight<T> abandoned : inFlight.values()) {
+				abandoned.future.cancel(true);
+			}
+		}
+		logger.debug("Fan-out completed: {}", result);
+		return result;
+	}
+
+	private <T> InFlight<T> submit(final String tenant, Callable<T> task, final BlockingQueue<Signal> signals) {
+		List<TaskInterceptor> chain = new ArrayList<>(this.interceptors.size() + 1);
+		chain.add(new MultitenantContextTaskInterceptor(tenant));
+		chain.addAll(this.interceptors);
+		final Callable<T> wrapped = new InterceptableCallable<T>(task, chain);
+		Future<T> future = this.delegate.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				signals.add(new Signal(tenant, true));
+				try {
+					return wrapped.call();
+				} finally {
+					signals.add(new Signal(tenant, false));
+				}
+			}
+		});
+		return new InFlight<T>(future);
+	}
+
+	private <T> long nextTimeout(Map<String, InFlight<T>> inFlight) {
+		long earliest = Long.MAX_VALUE;
+		for (InFlight<T> task : inFlight.values()) {
+			earliest = Math.min(earliest, task.deadline);
+		}
+		return (earliest == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, earliest - System.nanoTime()));
+	}
+
+	private <T> int expire(Map<String, InFlight<T>> inFlight, FanOutResult<T> result, FanOutListener<? super T> listener,
+			int completed, int total) {
+		if (this.timeout <= 0) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		List<String> expired = new ArrayList<>();
+		for (Map.Entry<String, InFlight<T>> entry : inFlight.entrySet()) {
+			if (entry.getValue().deadline - now <= 0) {
+				expired.add(entry.getKey());
+			}
+		}
+		for (String tenant : expired) {
+			inFlight.remove(tenant).future.cancel(true);
+			logger.warn("Task for tenant '{}' timed out after {} ms", tenant, this.timeout);
+			TimeoutException ex = new TimeoutException("Task for tenant '" + tenant + "' timed out after " + this.timeout + " ms");
+			result.addFailure(tenant, ex);
+			if (listener != null) {
+				listener.onFailure(tenant, ex, ++completed, total);
+			}
+		}
+		return expired.size();
+	}
+
+	private <T> void collect(String tenant, Future<T> future, FanOutResult<T> result, FanOutListener<? super T> listener,
+			int completed, int total) throws InterruptedException {
+		try {
+			T value = future.get();
+			result.addResult(tenant, value);
+			if (listener != null) {
+				listener.onSuccess(tenant, value, completed, total);
+			}
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			logger.warn("Task for tenant '{}' failed", tenant, cause);
+			result.addFailure(tenant, cause);
+			if (listener != null) {
+				listener.onFailure(tenant, cause, completed, total);
+			}
+		}
+	}
+
+	private static final class InFlight<T> {
+
+		private final Future<T> future;
+		private long deadline = Long.MAX_VALUE;
+
+		private InFlight(Future<T> future) {
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Start or completion of a tenant's task, reported to the supervising thread.
+	 */
+	private static final class Signal {
+
+		private final String tenant;
+		private final boolean started;
+		private final long time = System.nanoTime();
+
+		private Signal(String tenant, boolean started) {
+			this.tenant = tenant;
+			this.started = started;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * Helper methods to run work on a {@link ForkJoinPool} under the tenant context of the calling thread.
+ * Worker threads of a {@link ForkJoinPool} are shared by all tenants, so the context is carried by the
+ * tasks themselves (see {@link TenantRecursiveTask}) and not by the threads.
+ * 
+ * Checked exceptions thrown by a {@link Callable} are rethrown wrapped in a {@link RuntimeException}.
+ *
+ */
+public abstract class TenantForkJoin {
+
+	/**
+	 * Run the given task in the pool under the current tenant context and wait for its result.
+	 */
+	public static <T> T invoke(ForkJoinPool pool, Callable<T> task) {
+		Objects.requireNonNull(pool);
+		return pool.invoke(wrap(task, ContextHolder.getTenantContext()));
+	}
+
+	/**
+	 * Run all given tasks in parallel in the pool under the current tenant context and wait for their
+	 * results. The results are returned in the order of the given tasks.
+	 */
+	public static <T> List<T> invokeAll(ForkJoinPool pool, final List<? extends Callable<T>> tasks) {
+		Objects.requireNonNull(pool);
+		Objects.requireNonNull(tasks);
+		return pool.invoke(new TenantRecursiveTask<List<T>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<T> computeInContext() {
+				List<TenantRecursiveTask<T>> forked = new ArrayList<>(tasks.size());
+				for (Callable<T> task : tasks) {
+					forked.add(wrap(task, getCapturedContext()));
+				}
+				ForkJoinTask.invokeAll(forked);
+				List<T> results = new ArrayList<>(forked.size());
+				for (TenantRecursiveTask<T> task : forked) {
+					results.add(task.join());
+				}
+				return results;
+			}
+		});
+	}
+
+	/**
+	 * Adapt the given {@link Callable} to a {@link TenantRecursiveTask} for the given tenant context.
+	 */
+	public static <T> TenantRecursiveTask<T> wrap(final Callable<T> task, String tenantContext) {
+		return wrap(task, TenantContext.of(tenantContext));
+	}
+
+	/**
+	 * Adapt the given {@link Callable} to a {@link TenantRecursiveTask} for the given tenant context,
+	 * including its attributes.
+	 */
+	public static <T> TenantRecursiveTask<T> wrap(final Callable<T> task, TenantContext tenantContext) {
+		Objects.requireNonNull(task);
+		return new TenantRecursiveTask<T>(tenantContext) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected T computeInContext() {
+				try {
+					return task.call();
+				} catch (RuntimeException ex) {
+					throw ex;
+				} catch (Exception ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,81 @@
+package biz.deinum.multitenant.task;
+
+import java.util.concurrent.RecursiveTask;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@link RecursiveTask} which captures the tenant context of the thread that creates it, including its
+ * attributes, and sets it in the {@link ContextHolder} while {@link #computeInContext()} runs. Subtasks created from within
+ * {@link #computeInContext()} therefore inherit the same tenant, no matter which worker thread of the
+ * {@link java.util.concurrent.ForkJoinPool} steals them.
+ * 
+ * The previous context of the worker thread is restored afterwards, so tasks of different tenants can
+ * safely share (and join on) the same worker threads.
+ *
+ * @param <V> The result type of the task
+ * @see TenantForkJoin
+ */
+public abstract class TenantRecursiveTask<V> extends RecursiveTask<V> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String tenant;
+
+	/** Attributes are not serialized, a deserialized task runs with the tenant only */
+	private final transient TenantContext tenantContext;
+
+	/**
+	 * Creates a task that will run under the current thread's tenant context.
+	 */
+	protected TenantRecursiveTask() {
+		this(ContextHolder.getTenantContext());
+	}
+
+	/**
+	 * Creates a task that will run under the given tenant context.
+	 */
+	protected TenantRecursiveTask(String tenantContext) {
+		this(TenantContext.of(tenantContext));
+	}
+
+	/**
+	 * Creates a task that will run under the given tenant context, including its attributes.
+	 */
+	protected TenantRecursiveTask(TenantContext tenantContext) {
+		this.tenant = tenantContext != null ? tenantContext.getTenant() : null;
+		this.tenantContext = tenantContext;
+	}
+
+	public final String getTenantContext() {
+		return this.tenant;
+	}
+
+	/**
+	 * The captured tenant context including its attributes.
+	 */
+	public final TenantContext getCapturedContext() {
+		return this.tenantContext != null ? this.tenantContext : TenantContext.of(this.tenant);
+	}
+
+	@Override
+	protected final V compute() {
+		TenantContext originalContext = ContextHolder.getTenantContext();
+		ContextHolder.setTenantContext(getCapturedContext());
+		try {
+			return computeInContext();
+		} finally {
+			if (originalContext != null) {
+				ContextHolder.setTenantContext(originalContext);
+			} else {
+				ContextHolder.clear();
+			}
+		}
+	}
+
+	/**
+	 * The main computation performed by this task, executed under the captured tenant context.
+	 */
+	protected abstract V computeInContext();
+}
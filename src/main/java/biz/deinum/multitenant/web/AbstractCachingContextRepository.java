@@ -0,0 +1,140 @@
+package biz.deinum.multitenant.web;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Base class for {@code ContextRepository} implementations which derive the
+ * context from a raw request value (a host name, a token) by parsing it. The
+ * parsed context is kept in a cache keyed by the raw value, so each distinct
+ * raw value is usually only parsed once. Raw values which do not result in a
+ * context are cached as well.
+ * 
+ * The cache is a {@link ConcurrentHashMap}, so lookups do not block each
+ * other. Each entry is stamped when it is used; when the limit is exceeded
+ * the least recently used quarter of the entries is evicted in one pass, so
+ * a flood of distinct raw values (random <code>Host</code> headers) does not
+ * push out the entries which are in use. The eviction is approximately LRU
+ * and the size is only approximately bounded under concurrent updates.
+ */
+public abstract class AbstractCachingContextRepository implements
+		ContextRepository {
+
+	/** Marker for raw values which did not result in a context */
+	private static final String NO_CONTEXT = new String();
+
+	private final String defaultContext;
+
+	private final int cacheLimit;
+
+	private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+	private final AtomicInteger cacheSize = new AtomicInteger();
+
+	private final Lock evictionLock = new ReentrantLock();
+
+	protected AbstractCachingContextRepository(String defaultContext,
+			int cacheLimit) {
+		super();
+		this.defaultContext = defaultContext;
+		this.cacheLimit = cacheLimit;
+	}
+
+	@Override
+	public final String getContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		String raw = getRawValue(request);
+		if (raw == null) {
+			return defaultContext;
+		}
+		String context;
+		Entry entry = cache.get(raw);
+		if (entry != null) {
+			entry.lastAccess = System.nanoTime();
+			context = entry.context;
+		} else {
+			context = parseContext(raw);
+			if (context == null) {
+				context = NO_CONTEXT;
+			}
+			if (cache.putIfAbsent(raw, new Entry(context)) == null
+					&& cacheSize.incrementAndGet() > cacheLimit) {
+				evict(raw);
+			}
+		}
+		return (context == NO_CONTEXT ? defaultContext : context);
+	}
+
+	/**
+	 * Evict the least recently used entries until the cache is a quarter below
+	 * its limit, so the scan is only done once every so many misses. When
+	 * another thread is already evicting this returns immediately.
+	 */
+	private void evict(String keep) {
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			long[] stamps = new long[cacheSize.get() + 16];
+			int count = 0;
+			for (Entry entry : cache.values()) {
+				if (count == stamps.length) {
+					stamps = Arrays.copyOf(stamps, count * 2);
+				}
+				stamps[count++] = entry.lastAccess;
+			}
+			int retain = cacheLimit - cacheLimit / 4;
+			if (count <= retain) {
+				return;
+			}
+			Arrays.sort(stamps, 0, count);
+			long threshold = stamps[count - retain];
+			for (Map.Entry<String, Entry> candidate : cache.entrySet()) {
+				if (candidate.getValue().lastAccess < threshold
+						&& !candidate.getKey().equals(keep)
+						&& cache.remove(candidate.getKey(), candidate.getValue())) {
+					cacheSize.decrementAndGet();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Obtain the raw value from the request, this should be cheap.
+	 * 
+	 * @return the raw value or <code>null</code> if not present
+	 */
+	protected abstract String getRawValue(HttpServletRequest request);
+
+	/**
+	 * Parse the context from the raw value, only called on a cache miss.
+	 * 
+	 * @return the context or <code>null</code> if the raw value contains none
+	 */
+	protected abstract String parseContext(String raw);
+
+	int getCacheSize() {
+		return cache.size();
+	}
+
+	private static final class Entry {
+
+		private final String context;
+
+		private volatile long lastAccess = System.nanoTime();
+
+		private Entry(String context) {
+			this.context = context;
+		}
+	}
+}
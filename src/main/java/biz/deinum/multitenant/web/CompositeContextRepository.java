@@ -0,0 +1,96 @@
+package biz.deinum.multitenant.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@code ContextRepository} which delegates to a list of
+ * {@code ContextRepository} instances in order, the first one returning a
+ * context wins. The delegates should therefore not have a default context
+ * themselves, use the <code>defaultContext</code> of this repository instead.
+ * Attributes resolved by {@code TenantContextRepository} delegates are kept.
+ * 
+ * The resolved context is stored as a request attribute. Subsequent lookups
+ * for the same request (for instance by a
+ * {@link biz.deinum.multitenant.web.filter.ContextFilter} followed by a
+ * {@link biz.deinum.multitenant.web.servlet.ContextInterceptor}, or on an
+ * async or error dispatch) reuse it instead of resolving it again.
+ */
+public class CompositeContextRepository implements TenantContextRepository {
+
+	/** Name of the request attribute holding the resolved context */
+	public static final String CONTEXT_ATTRIBUTE = CompositeContextRepository.class
+			.getName() + ".CONTEXT";
+
+	/** Marker stored when no context could be resolved */
+	private static final Object NO_CONTEXT = new Object();
+
+	private final Logger logger = LoggerFactory
+			.getLogger(CompositeContextRepository.class);
+
+	private final List<ContextRepository> repositories;
+
+	private String defaultContext;
+
+	public CompositeContextRepository(ContextRepository... repositories) {
+		this(Arrays.asList(repositories));
+	}
+
+	public CompositeContextRepository(List<ContextRepository> repositories) {
+		super();
+		Assert.notEmpty(repositories, "At least one ContextRepository is required!");
+		this.repositories = new ArrayList<ContextRepository>(repositories);
+	}
+
+	@Override
+	public String getContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		TenantContext context = getTenantContext(request, response);
+		return (context != null ? context.getTenant() : null);
+	}
+
+	@Override
+	public TenantContext getTenantContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		Object resolved = request.getAttribute(CONTEXT_ATTRIBUTE);
+		if (resolved == null) {
+			resolved = resolveContext(request, response);
+			request.setAttribute(CONTEXT_ATTRIBUTE, (resolved != null ? resolved : NO_CONTEXT));
+		}
+		return (resolved instanceof TenantContext ? (TenantContext) resolved
+				: TenantContext.of(defaultContext));
+	}
+
+	private TenantContext resolveContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		for (ContextRepository repository : repositories) {
+			TenantContext context = ContextRepositoryUtils.resolveContext(
+					repository, request, response);
+			if (context != null && StringUtils.hasText(context.getTenant())) {
+				logger.debug("Context '{}' resolved by '{}'", context, repository);
+				return context;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The context to use when none of the repositories returns a context.
+	 * 
+	 * @param defaultContext
+	 */
+	public void setDefaultContext(String defaultContext) {
+		this.defaultContext = defaultContext;
+	}
+}
@@ -0,0 +1,55 @@
+package biz.deinum.multitenant.web;
+
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptorAdapter;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@code CallableProcessingInterceptor} which sets the context of the request
+ * on the thread executing a {@code Callable} returned from a controller, and
+ * clears it afterwards. An instance is registered per request with the
+ * {@code WebAsyncManager} under the {@link #KEY}.
+ * 
+ * @see biz.deinum.multitenant.web.filter.ContextFilter
+ * @see biz.deinum.multitenant.web.servlet.ContextInterceptor
+ */
+public class ContextCallableProcessingInterceptor extends
+		CallableProcessingInterceptorAdapter {
+
+	/** Key under which the interceptor is registered with the WebAsyncManager */
+	public static final Object KEY = ContextCallableProcessingInterceptor.class
+			.getName();
+
+	private final Logger logger = LoggerFactory
+			.getLogger(ContextCallableProcessingInterceptor.class);
+
+	private final TenantContext context;
+
+	public ContextCallableProcessingInterceptor(String context) {
+		this(TenantContext.of(context));
+	}
+
+	public ContextCallableProcessingInterceptor(TenantContext context) {
+		super();
+		this.context = context;
+	}
+
+	@Override
+	public <T> void preProcess(NativeWebRequest request, Callable<T> task)
+			throws Exception {
+		logger.debug("Using context for async processing: {}", context);
+		ContextHolder.setTenantContext(context);
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, Callable<T> task,
+			Object concurrentResult) throws Exception {
+		ContextHolder.clear();
+	}
+}
@@ -0,0 +1,27 @@
+package biz.deinum.multitenant.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * Helper methods for working with a {@code ContextRepository}, shared by the
+ * {@code ContextFilter} and {@code ContextInterceptor}.
+ */
+public abstract class ContextRepositoryUtils {
+
+	/**
+	 * Resolve the {@code TenantContext} of the request, including its
+	 * attributes when the repository is a {@code TenantContextRepository}.
+	 * 
+	 * @return the context or <code>null</code> when no context is found
+	 */
+	public static TenantContext resolveContext(ContextRepository contextRepository,
+			HttpServletRequest request, HttpServletResponse response) {
+		if (contextRepository instanceof TenantContextRepository) {
+			return ((TenantContextRepository) contextRepository).getTenantContext(request, response);
+		}
+		return TenantContext.of(contextRepository.getContext(request, response));
+	}
+}
@@ -0,0 +1,12 @@
+package biz.deinum.multitenant.web;
+
+/**
+ * Strategy to check whether a context resolved from a request is a known
+ * context, before any work is done for it.
+ * 
+ * @see biz.deinum.multitenant.web.filter.ContextFilter#setContextValidator(ContextValidator)
+ */
+public interface ContextValidator {
+
+	boolean isValid(String context);
+}
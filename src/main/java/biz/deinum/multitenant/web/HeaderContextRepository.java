@@ -0,0 +1,105 @@
+package biz.deinum.multitenant.web;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.StringUtils;
+
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@code ContextRepository} which uses the value of a request header as the
+ * context, by default the <code>X-Tenant-ID</code> header. The header value
+ * is the context, so no parsing or caching is needed.
+ * 
+ * Attributes of the context can be taken from additional headers, for
+ * instance an <code>X-Tenant-Region</code> header, see
+ * {@link #setAttributeHeaders(Map)}. An attribute header which cannot be
+ * converted is ignored, the context is resolved without that attribute.
+ */
+public class HeaderContextRepository implements TenantContextRepository {
+
+	private static final String DEFAULT_HEADER = "X-Tenant-ID";
+
+	private final Logger logger = LoggerFactory
+			.getLogger(HeaderContextRepository.class);
+
+	private final String header;
+	private final String defaultContext;
+	private Map<String, ContextAttribute<?>> attributeHeaders = Collections.emptyMap();
+	private ConversionService conversionService = new DefaultConversionService();
+
+	public HeaderContextRepository(String defaultContext) {
+		this(DEFAULT_HEADER, defaultContext);
+	}
+
+	public HeaderContextRepository(String header, String defaultContext) {
+		super();
+		this.header = header;
+		this.defaultContext = defaultContext;
+	}
+
+	@Override
+	public String getContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		String value = request.getHeader(header);
+		return (StringUtils.hasText(value) ? value.trim() : defaultContext);
+	}
+
+	@Override
+	public TenantContext getTenantContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		TenantContext context = TenantContext.of(getContext(request, response));
+		if (context == null) {
+			return null;
+		}
+		for (Map.Entry<String, ContextAttribute<?>> entry : attributeHeaders.entrySet()) {
+			String value = request.getHeader(entry.getKey());
+			if (StringUtils.hasText(value)) {
+				context = withAttribute(context, entry.getValue(), value.trim());
+			}
+		}
+		return context;
+	}
+
+	private <T> TenantContext withAttribute(TenantContext context,
+			ContextAttribute<T> attribute, String value) {
+		try {
+			return context.with(attribute,
+					conversionService.convert(value, attribute.getType()));
+		} catch (ConversionException ex) {
+			logger.debug("Ignoring invalid value '{}' for attribute {}", value, attribute);
+			return context;
+		}
+	}
+
+	/**
+	 * Map of header names to the context attributes they provide. Header
+	 * values are converted to the type of the attribute.
+	 * 
+	 * @param attributeHeaders
+	 */
+	public void setAttributeHeaders(Map<String, ContextAttribute<?>> attributeHeaders) {
+		this.attributeHeaders = new LinkedHashMap<String, ContextAttribute<?>>(attributeHeaders);
+	}
+
+	/**
+	 * The {@code ConversionService} used to convert header values to the type
+	 * of the attribute, default a {@code DefaultConversionService}.
+	 * 
+	 * @param conversionService
+	 */
+	public void setConversionService(ConversionService conversionService) {
+		this.conversionService = conversionService;
+	}
+}
@@ -0,0 +1,61 @@
+package biz.deinum.multitenant.web;
+
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * {@code ContextRepository} which uses the subdomain of the requested host
+ * name as the context, <code>acme.example.com</code> results in
+ * <code>acme</code>.
+ * 
+ * When a <code>domain</code> is set (for instance <code>example.com</code>)
+ * only host names directly below that domain result in a context. Without a
+ * domain the first label of host names with at least three labels is used.
+ * 
+ * The host name is obtained through {@code getServerName()}, which the
+ * container already parsed from the <code>Host</code> header.
+ */
+public class HostContextRepository extends AbstractCachingContextRepository {
+
+	private static final int DEFAULT_CACHE_LIMIT = 1024;
+
+	private final String domainSuffix;
+
+	public HostContextRepository(String defaultContext) {
+		this(null, defaultContext);
+	}
+
+	public HostContextRepository(String domain, String defaultContext) {
+		this(domain, defaultContext, DEFAULT_CACHE_LIMIT);
+	}
+
+	public HostContextRepository(String domain, String defaultContext,
+			int cacheLimit) {
+		super(defaultContext, cacheLimit);
+		this.domainSuffix = (domain != null ? "." + domain.toLowerCase(Locale.ENGLISH) : null);
+	}
+
+	@Override
+	protected String getRawValue(HttpServletRequest request) {
+		return request.getServerName();
+	}
+
+	@Override
+	protected String parseContext(String host) {
+		int end = host.indexOf('.');
+		if (end <= 0) {
+			return null;
+		}
+		if (domainSuffix != null) {
+			if (!host.regionMatches(true, end, domainSuffix, 0, domainSuffix.length())
+					|| host.length() != end + domainSuffix.length()) {
+				return null;
+			}
+		} else if (host.indexOf('.', end + 1) < 0) {
+			// Only a domain and top level domain, there is no subdomain
+			return null;
+		}
+		return host.substring(0, end).toLowerCase(Locale.ENGLISH);
+	}
+}
@@ -0,0 +1,233 @@
+package biz.deinum.multitenant.web;
+
+import java.nio.charset.Charset;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * {@code ContextRepository} which uses a claim of a JSON Web Token as the
+ * context, by default the <code>tenant</code> claim of the bearer token in
+ * the <code>Authorization</code> header.
+ * 
+ * <b>The signature of the token is NOT verified</b>, this repository only
+ * reads the claim to route the request. Authentication must verify the token
+ * before anything is trusted.
+ * 
+ * The claim is decoded on every request. Tokens are chosen by the client, so
+ * caching by token would let forged tokens evict the entries of legitimate
+ * ones.
+ */
+public class JwtClaimContextRepository implements ContextRepository {
+
+	private static final String DEFAULT_HEADER = "Authorization";
+	private static final String DEFAULT_CLAIM = "tenant";
+	private static final String BEARER = "Bearer ";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String header;
+	private final String claim;
+	private final String defaultContext;
+
+	public JwtClaimContextRepository(String defaultContext) {
+		this(DEFAULT_HEADER, DEFAULT_CLAIM, defaultContext);
+	}
+
+	public JwtClaimContextRepository(String header, String claim,
+			String defaultContext) {
+		super();
+		this.header = header;
+		this.claim = claim;
+		this.defaultContext = defaultContext;
+	}
+
+	@Override
+	public String getContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		String raw = request.getHeader(header);
+		String context = (raw != null ? parseContext(raw) : null);
+		return (context != null ? context : defaultContext);
+	}
+
+	private String parseContext(String raw) {
+		int start = (raw.regionMatches(true, 0, BEARER, 0, BEARER.length()) ? BEARER.length() : 0);
+		int first = raw.indexOf('.', start);
+		int second = (first < 0 ? -1 : raw.indexOf('.', first + 1));
+		if (second < 0) {
+			return null;
+		}
+		byte[] payload = decodeBase64Url(raw, first + 1, second);
+		if (payload == null) {
+			return null;
+		}
+		return extractClaim(new String(payload, UTF8), claim);
+	}
+
+	static byte[] decodeBase64Url(String value, int from, int to) {
+		while (to > from && value.charAt(to - 1) == '=') {
+			to--;
+		}
+		byte[] result = new byte[(to - from) * 3 / 4];
+		int buffer = 0;
+		int bits = 0;
+		int length = 0;
+		for (int i = from; i < to; i++) {
+			int sextet = sextet(value.charAt(i));
+			if (sextet < 0) {
+				return null;
+			}
+			buffer = (buffer << 6) | sextet;
+			bits += 6;
+			if (bits >= 8) {
+				bits -= 8;
+				result[length++] = (byte) (buffer >> bits);
+				buffer &= (1 << bits) - 1;
+			}
+		}
+		if (length == result.length) {
+			return result;
+		}
+		byte[] trimmed = new byte[length];
+		System.arraycopy(result, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
+	private static int sextet(char c) {
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A';
+		} else if (c >= 'a' && c <= 'z') {
+			return c - 'a' + 26;
+		} else if (c >= '0' && c <= '9') {
+			return c - '0' + 52;
+		} else if (c == '-' || c == '+') {
+			return 62;
+		} else if (c == '_' || c == '/') {
+			return 63;
+		}
+		return -1;
+	}
+
+	/**
+	 * Extract the value of a top level string or number member from a JSON
+	 * object.
+	 * 
+	 * @return the value or <code>null</code> if not found (or not a string or
+	 *         number)
+	 */
+	static String extractClaim(String json, String name) {
+		int depth = 0;
+		int i = 0;
+		int length = json.length();
+		while (i < length) {
+			char c = json.charAt(i);
+			if (c == '{' || c == '[') {
+				depth++;
+				i++;
+			} else if (c == '}' || c == ']') {
+				depth--;
+				i++;
+			} else if (c == '"') {
+				int end = endOfString(json, i);
+				if (end < 0) {
+					return null;
+				}
+				int next = skipWhitespace(json, end + 1);
+				if (depth == 1 && next < length && json.charAt(next) == ':'
+						&& end - i - 1 == name.length()
+						&& json.regionMatches(i + 1, name, 0, name.length())) {
+					return readValue(json, skipWhitespace(json, next + 1));
+				}
+				i = end + 1;
+			} else {
+				i++;
+			}
+		}
+		return null;
+	}
+
+	private static String readValue(String json, int start) {
+		if (start >= json.length()) {
+			return null;
+		}
+		char c = json.charAt(start);
+		if (c == '"') {
+			int end = endOfString(json, start);
+			if (end < 0) {
+				return null;
+			}
+			String value = json.substring(start + 1, end);
+			return (value.indexOf('\\') < 0 ? value : unescape(value));
+		}
+		int end = start;
+		while (end < json.length()) {
+			char d = json.charAt(end);
+			if (!(d == '-' || d == '.' || (d >= '0' && d <= '9'))) {
+				break;
+			}
+			end++;
+		}
+		return (end > start ? json.substring(start, end) : null);
+	}
+
+	private static int endOfString(String json, int start) {
+		for (int i = start + 1; i < json.length(); i++) {
+			char c = json.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '"') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int skipWhitespace(String json, int start) {
+		int i = start;
+		while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static String unescape(String value) {
+		StringBuilder result = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c != '\\' || i + 1 >= value.length()) {
+				result.append(c);
+				continue;
+			}
+			char escaped = value.charAt(++i);
+			switch (escaped) {
+			case 'n':
+				result.append('\n');
+				break;
+			case 't':
+				result.append('\t');
+				break;
+			case 'r':
+				result.append('\r');
+				break;
+			case 'b':
+				result.append('\b');
+				break;
+			case 'f':
+				result.append('\f');
+				break;
+			case 'u':
+				if (i + 4 < value.length()) {
+					try {
+						result.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+					} catch (NumberFormatException ex) {
+						// Malformed escape, skip it
+					}
+					i += 4;
+				}
+				break;
+			default:
+				result.append(escaped);
+			}
+		}
+		return result.toString();
+	}
+}
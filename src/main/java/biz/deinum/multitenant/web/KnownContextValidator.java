@@ -0,0 +1,55 @@
+package biz.deinum.multitenant.web;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import biz.deinum.multitenant.core.TenantId;
+
+/**
+ * {@code ContextValidator} which accepts only the contexts from a known set.
+ * 
+ * The set can be replaced at runtime with {@link #setContexts(Collection)},
+ * for instance from a scheduled task when tenants are added or removed. The
+ * set is replaced as a whole, so validation never needs to lock. The known
+ * contexts are interned as {@link TenantId}.
+ */
+public class KnownContextValidator implements ContextValidator {
+
+	private final Logger logger = LoggerFactory
+			.getLogger(KnownContextValidator.class);
+
+	private volatile Set<String> contexts = Collections.emptySet();
+
+	public KnownContextValidator() {
+		super();
+	}
+
+	public KnownContextValidator(Collection<String> contexts) {
+		this();
+		setContexts(contexts);
+	}
+
+	@Override
+	public boolean isValid(String context) {
+		return context != null && contexts.contains(context);
+	}
+
+	/**
+	 * Replace the known contexts.
+	 * 
+	 * @param contexts
+	 */
+	public void setContexts(Collection<String> contexts) {
+		Set<String> known = (contexts != null ? new HashSet<String>(contexts) : Collections.<String>emptySet());
+		for (String context : known) {
+			TenantId.of(context);
+		}
+		logger.debug("Known contexts replaced, now {} contexts", known.size());
+		this.contexts = known;
+	}
+}
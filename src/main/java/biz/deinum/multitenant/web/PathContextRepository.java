@@ -0,0 +1,45 @@
+package biz.deinum.multitenant.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * {@code ContextRepository} which uses the first segment of the path within
+ * the application as the context, <code>/acme/orders/1</code> results in
+ * <code>acme</code>.
+ * 
+ * The segment is located with plain index arithmetic on the request URI. The
+ * request URIs are not cached, as nearly every request has a different URI.
+ */
+public class PathContextRepository implements ContextRepository {
+
+	private final String defaultContext;
+
+	public PathContextRepository(String defaultContext) {
+		super();
+		this.defaultContext = defaultContext;
+	}
+
+	@Override
+	public String getContext(HttpServletRequest request,
+			HttpServletResponse response) {
+		String uri = request.getRequestURI();
+		if (uri == null) {
+			return defaultContext;
+		}
+		String contextPath = request.getContextPath();
+		int start = (contextPath != null && uri.startsWith(contextPath) ? contextPath.length() : 0);
+		if (start < uri.length() && uri.charAt(start) == '/') {
+			start++;
+		}
+		int end = start;
+		while (end < uri.length()) {
+			char c = uri.charAt(end);
+			if (c == '/' || c == ';' || c == '?') {
+				break;
+			}
+			end++;
+		}
+		return (end > start ? uri.substring(start, end) : defaultContext);
+	}
+}
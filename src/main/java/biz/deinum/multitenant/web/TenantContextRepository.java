@@ -0,0 +1,18 @@
+package biz.deinum.multitenant.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * {@code ContextRepository} which also resolves the attributes of the
+ * context. The {@code ContextFilter} and {@code ContextInterceptor} set the
+ * full {@code TenantContext} when their repository implements this
+ * interface.
+ */
+public interface TenantContextRepository extends ContextRepository {
+
+	TenantContext getTenantContext(HttpServletRequest request,
+			HttpServletResponse response);
+}
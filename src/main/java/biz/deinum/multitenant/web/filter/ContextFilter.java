@@ -10,10 +10,16 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextLeakDetector;
+import biz.deinum.multitenant.core.TenantContext;
+import biz.deinum.multitenant.web.ContextCallableProcessingInterceptor;
 import biz.deinum.multitenant.web.ContextRepository;
+import biz.deinum.multitenant.web.ContextRepositoryUtils;
+import biz.deinum.multitenant.web.ContextValidator;
 
 /**
  * {@code javax.servlet.Filter} which sets the context from the current request.
@@ -23,6 +29,16 @@ import biz.deinum.multitenant.web.ContextRepository;
  * switched of by setting the <code>throwExceptionOnMissingContext</code>
  * property.
  * 
+ * When a {@code ContextValidator} is configured an unknown context is rejected
+ * with a 404 (configurable) response before the rest of the filter chain is
+ * invoked, so no work is done for requests probing random tenants.
+ * 
+ * Async dispatches are filtered as well, and a
+ * {@code ContextCallableProcessingInterceptor} is registered so that a
+ * {@code Callable} returned from a controller runs with the context of the
+ * request. Error dispatches are only filtered when
+ * <code>filterErrorDispatch</code> is set.
+ * 
  * @author Marten Deinum
  * @since 1.3
  * @see biz.deinum.multitenant.web.servlet.ContextInterceptor
@@ -35,6 +51,12 @@ public class ContextFilter extends OncePerRequestFilter {
 
 	private boolean throwExceptionOnMissingContext = true;
 
+	private ContextValidator contextValidator;
+
+	private int rejectionStatus = HttpServletResponse.SC_NOT_FOUND;
+
+	private boolean filterErrorDispatch = false;
+
 	public ContextFilter(ContextRepository contextRepository) {
 		super();
 		this.contextRepository = contextRepository;
@@ -44,14 +66,23 @@ public class ContextFilter extends OncePerRequestFilter {
 	protected void doFilterInternal(HttpServletRequest request,
 			HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
+		ContextLeakDetector.checkCleared("the start of a request");
 		try {
-			String context = contextRepository.getContext(request, response);
-			logger.debug("Using context: {}", context);
+			TenantContext tenantContext = ContextRepositoryUtils.resolveContext(
+					contextRepository, request, response);
+			String context = tenantContext != null ? tenantContext.getTenant() : null;
+			logger.debug("Using context: {}", tenantContext);
 			if (throwExceptionOnMissingContext && !StringUtils.hasText(context)) {
 				throw new IllegalStateException(
 						"Could not determine context for current request!");
+			} else if (isRejected(context)) {
+				logger.debug("Rejecting unknown context: {}", context);
+				response.sendError(rejectionStatus);
 			} else {
-				ContextHolder.setContext(context);
+				ContextHolder.setTenantContext(tenantContext);
+				WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(
+						ContextCallableProcessingInterceptor.KEY,
+						new ContextCallableProcessingInterceptor(tenantContext));
 				filterChain.doFilter(request, response);
 			}
 		} finally {
@@ -60,6 +91,25 @@ public class ContextFilter extends OncePerRequestFilter {
 		}
 	}
 
+	/**
+	 * Async dispatches need the context as well, the dispatch continues the
+	 * processing of the request.
+	 */
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected boolean shouldNotFilterErrorDispatch() {
+		return !filterErrorDispatch;
+	}
+
+	private boolean isRejected(String context) {
+		return contextValidator != null && StringUtils.hasText(context)
+				&& !contextValidator.isValid(context);
+	}
+
 	/**
 	 * When <code>true</code> (the default) an exception is throw if no context is
 	 * found for the current request.
@@ -70,4 +120,33 @@ public class ContextFilter extends OncePerRequestFilter {
 			boolean throwExceptionOnMissingContext) {
 		this.throwExceptionOnMissingContext = throwExceptionOnMissingContext;
 	}
+
+	/**
+	 * The {@code ContextValidator} used to reject unknown contexts, default
+	 * none (all contexts are accepted).
+	 * 
+	 * @param contextValidator
+	 */
+	public void setContextValidator(ContextValidator contextValidator) {
+		this.contextValidator = contextValidator;
+	}
+
+	/**
+	 * When <code>true</code> the context is also set for error dispatches,
+	 * default <code>false</code>.
+	 * 
+	 * @param filterErrorDispatch
+	 */
+	public void setFilterErrorDispatch(boolean filterErrorDispatch) {
+		this.filterErrorDispatch = filterErrorDispatch;
+	}
+
+	/**
+	 * The HTTP status used to reject unknown contexts, default 404.
+	 * 
+	 * @param rejectionStatus
+	 */
+	public void setRejectionStatus(int rejectionStatus) {
+		this.rejectionStatus = rejectionStatus;
+	}
 }
@@ -0,0 +1,363 @@
+package biz.deinum.multitenant.web.filter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * {@code javax.servlet.Filter} which limits the request rate and the number
+ * of concurrent requests per context, so a traffic spike of one tenant cannot
+ * take all container threads. Must be placed after the {@link ContextFilter},
+ * requests without a context are not limited.
+ * 
+ * The rate is limited with a token bucket (<code>requestsPerSecond</code>,
+ * with a <code>burst</code> size) and the concurrency with a counter
+ * (<code>maxConcurrentRequests</code>), 0 disables either limit. Both are
+ * lock-free. Rejected requests get a 429 (Too Many Requests) response with a
+ * <code>Retry-After</code> header.
+ * 
+ * The limits can be overridden per context with {@link #setOverrides(Map)}.
+ * 
+ * At most <code>maxContexts</code> contexts are tracked. When the limit is
+ * reached idle contexts are dropped, if none are idle, new contexts share a
+ * single throttle with the default limits, so clients sending random contexts
+ * cannot grow the state without bound. Idle contexts are looked for at most
+ * once per second, in between new contexts use the shared throttle.
+ * 
+ * An async request counts against the concurrency limit until it completes,
+ * errors or times out, not only while the container thread processes it.
+ * 
+ * @see ContextFilter
+ */
+public class ContextThrottlingFilter extends OncePerRequestFilter {
+
+	/** HTTP status 429, not defined by the Servlet 3.0 API */
+	public static final int SC_TOO_MANY_REQUESTS = 429;
+
+	private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	private final Logger logger = LoggerFactory
+			.getLogger(ContextThrottlingFilter.class);
+
+	private final ConcurrentMap<String, Throttle> throttles = new ConcurrentHashMap<String, Throttle>();
+
+	private Limit defaultLimit = new Limit(0, 1, 0);
+
+	private Map<String, Limit> overrides = new HashMap<String, Limit>();
+
+	private int maxContexts = 10000;
+
+	private volatile Throttle overflow = new Throttle(defaultLimit);
+
+	private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request,
+			HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String context = ContextHolder.getContext();
+		if (context == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		Throttle throttle = getThrottle(context);
+		long waitNanos = throttle.acquireRate();
+		if (waitNanos > 0) {
+			logger.debug("Rate limit exceeded for context: {}", context);
+			reject(response, waitNanos);
+			return;
+		}
+		if (!throttle.acquireConcurrency()) {
+			throttle.refundRate();
+			logger.debug("Concurrency limit exceeded for context: {}", context);
+			reject(response, TimeUnit.SECONDS.toNanos(1));
+			return;
+		}
+		boolean async = false;
+		try {
+			filterChain.doFilter(request, response);
+			async = isServletAsyncStarted(request);
+		} finally {
+			if (async) {
+				request.getAsyncContext().addListener(new ConcurrencyReleasingListener(throttle));
+			} else {
+				throttle.releaseConcurrency();
+			}
+		}
+	}
+
+	private static boolean isServletAsyncStarted(HttpServletRequest request) {
+		try {
+			return request.isAsyncStarted();
+		} catch (AbstractMethodError ex) {
+			// Pre Servlet 3.0 request, there is no async processing
+			return false;
+		}
+	}
+
+	private void reject(HttpServletResponse response, long waitNanos) {
+		long seconds = Math.max(1, (waitNanos + 999999999L) / 1000000000L);
+		response.setStatus(SC_TOO_MANY_REQUESTS);
+		response.setHeader("Retry-After", String.valueOf(seconds));
+	}
+
+	private Throttle getThrottle(String context) {
+		Throttle throttle = throttles.get(context);
+		if (throttle == null) {
+			Limit limit = overrides.get(context);
+			if (limit == null && throttles.size() >= maxContexts) {
+				sweepIdleThrottles();
+				if (throttles.size() >= maxContexts) {
+					return overflow;
+				}
+			}
+			Throttle created = new Throttle(limit != null ? limit : defaultLimit);
+			throttle = throttles.putIfAbsent(context, created);
+			if (throttle == null) {
+				throttle = created;
+			}
+		}
+		return throttle;
+	}
+
+	/**
+	 * Drop the throttles which behave like new ones, no requests in flight and
+	 * a full bucket. The map is scanned at most once per second, by a single
+	 * thread, to keep the scan off the path of most requests.
+	 */
+	private void sweepIdleThrottles() {
+		long now = System.nanoTime();
+		long next = nextSweep.get();
+		if (now - next < 0 || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+			return;
+		}
+		for (Map.Entry<String, Throttle> entry : throttles.entrySet()) {
+			if (entry.getValue().isIdle(now)) {
+				throttles.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void reset() {
+		throttles.clear();
+		overflow = new Throttle(defaultLimit);
+		nextSweep.set(System.nanoTime());
+	}
+
+	/**
+	 * The maximum requests per second per context, default 0 (unlimited).
+	 * 
+	 * @param requestsPerSecond
+	 */
+	public void setRequestsPerSecond(double requestsPerSecond) {
+		this.defaultLimit = new Limit(requestsPerSecond, defaultLimit.burst,
+				defaultLimit.maxConcurrentRequests);
+		reset();
+	}
+
+	/**
+	 * The number of requests per context allowed at once on top of the rate,
+	 * default 1.
+	 * 
+	 * @param burst
+	 */
+	public void setBurst(int burst) {
+		this.defaultLimit = new Limit(defaultLimit.requestsPerSecond, burst,
+				defaultLimit.maxConcurrentRequests);
+		reset();
+	}
+
+	/**
+	 * The maximum concurrent requests per context, default 0 (unlimited).
+	 * 
+	 * @param maxConcurrentRequests
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		this.defaultLimit = new Limit(defaultLimit.requestsPerSecond,
+				defaultLimit.burst, maxConcurrentRequests);
+		reset();
+	}
+
+	/**
+	 * The limits for specific contexts, replacing the defaults.
+	 * 
+	 * @param overrides
+	 */
+	public void setOverrides(Map<String, Limit> overrides) {
+		this.overrides = new HashMap<String, Limit>(overrides);
+		reset();
+	}
+
+	/**
+	 * The maximum number of contexts tracked separately, default 10000.
+	 * Contexts with an override are always tracked.
+	 * 
+	 * @param maxContexts
+	 */
+	public void setMaxContexts(int maxContexts) {
+		this.maxContexts = maxContexts;
+		reset();
+	}
+
+	/**
+	 * The limits of a context.
+	 */
+	public static final class Limit {
+
+		private final double requestsPerSecond;
+		private final int burst;
+		private final int maxConcurrentRequests;
+
+		/**
+		 * @param requestsPerSecond the rate, 0 is unlimited
+		 * @param burst the requests allowed at once on top of the rate
+		 * @param maxConcurrentRequests 0 is unlimited
+		 */
+		public Limit(double requestsPerSecond, int burst,
+				int maxConcurrentRequests) {
+			if (requestsPerSecond < 0 || burst < 1 || maxConcurrentRequests < 0) {
+				throw new IllegalArgumentException("Invalid limit: rate="
+						+ requestsPerSecond + ", burst=" + burst
+						+ ", maxConcurrentRequests=" + maxConcurrentRequests);
+			}
+			this.requestsPerSecond = requestsPerSecond;
+			this.burst = burst;
+			this.maxConcurrentRequests = maxConcurrentRequests;
+		}
+	}
+
+	/**
+	 * The state of a context. The token bucket is implemented as a generic cell
+	 * rate algorithm: a single theoretical arrival time which is advanced with a
+	 * compare-and-set for each accepted request.
+	 */
+	private static final class Throttle {
+
+		private final long interval;
+		private final long tolerance;
+		private final int maxConcurrentRequests;
+		private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private Throttle(Limit limit) {
+			this.interval = (limit.requestsPerSecond > 0 ? (long) (1000000000L / limit.requestsPerSecond) : 0);
+			this.tolerance = interval * (limit.burst - 1);
+			this.maxConcurrentRequests = limit.maxConcurrentRequests;
+		}
+
+		/**
+		 * @return 0 when allowed, else the nanoseconds until the next request
+		 *         is allowed
+		 */
+		private long acquireRate() {
+			if (interval == 0) {
+				return 0;
+			}
+			while (true) {
+				long now = System.nanoTime();
+				long arrival = theoreticalArrival.get();
+				long wait = arrival - tolerance - now;
+				if (wait > 0) {
+					return wait;
+				}
+				if (theoreticalArrival.compareAndSet(arrival, Math.max(arrival, now) + interval)) {
+					return 0;
+				}
+			}
+		}
+
+		private boolean acquireConcurrency() {
+			if (maxConcurrentRequests == 0) {
+				return true;
+			}
+			while (true) {
+				int current = inFlight.get();
+				if (current >= maxConcurrentRequests) {
+					return false;
+				}
+				if (inFlight.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Give back the token of a request which was not let through.
+		 */
+		private void refundRate() {
+			if (interval != 0) {
+				theoreticalArrival.addAndGet(-interval);
+			}
+		}
+
+		private boolean isIdle(long now) {
+			return inFlight.get() == 0 && theoreticalArrival.get() - now <= 0;
+		}
+
+		private void releaseConcurrency() {
+			if (maxConcurrentRequests != 0) {
+				inFlight.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Releases the concurrency permit of an async request once it is done.
+	 */
+	private static final class ConcurrencyReleasingListener implements AsyncListener {
+
+		private final Throttle throttle;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private ConcurrencyReleasingListener(Throttle throttle) {
+			this.throttle = throttle;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// Still in flight, the listener has to be registered again
+			event.getAsyncContext().addListener(this);
+		}
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				throttle.releaseConcurrency();
+			}
+		}
+	}
+}
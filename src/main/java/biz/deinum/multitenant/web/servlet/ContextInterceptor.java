@@ -6,10 +6,14 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+import biz.deinum.multitenant.web.ContextCallableProcessingInterceptor;
 import biz.deinum.multitenant.web.ContextRepository;
+import biz.deinum.multitenant.web.ContextRepositoryUtils;
 
 /**
  * {@code HandlerInterceptor} which sets the context from the current request.
@@ -19,6 +23,16 @@ import biz.deinum.multitenant.web.ContextRepository;
  * switched of by setting the <code>throwExceptionOnMissingContext</code>
  * property.
  * 
+ * For async requests a {@code ContextCallableProcessingInterceptor} is
+ * registered so that a {@code Callable} returned from the handler runs with
+ * the context, and the context is cleared from the request thread once
+ * concurrent handling has started (<code>afterCompletion</code> is not called
+ * in that case). The context is set again on the async dispatch.
+ * 
+ * Leaked contexts are not checked for here, the interceptor often runs behind
+ * a {@code ContextFilter} which has set the context already and checks at the
+ * start of the request.
+ * 
  * @author Marten Deinum
  * @since 1.3
  * @see biz.deinum.multitenant.web.filter.ContextFilter
@@ -37,17 +51,28 @@ public class ContextInterceptor extends HandlerInterceptorAdapter {
 	@Override
 	public boolean preHandle(HttpServletRequest request,
 			HttpServletResponse response, Object handler) throws Exception {
-		String context = contextRepository.getContext(request, response);
-		logger.debug("Using context: {}", context);
+		TenantContext tenantContext = ContextRepositoryUtils.resolveContext(
+				contextRepository, request, response);
+		String context = tenantContext != null ? tenantContext.getTenant() : null;
+		logger.debug("Using context: {}", tenantContext);
 		if (throwExceptionOnMissingContext && !StringUtils.hasText(context)) {
 			throw new IllegalStateException(
 					"Could not determine context for current request!");
 		} else {
-			ContextHolder.setContext(context);
+			ContextHolder.setTenantContext(tenantContext);
+			WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(
+					ContextCallableProcessingInterceptor.KEY,
+					new ContextCallableProcessingInterceptor(tenantContext));
 		}
 		return true;
 	}
 
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		ContextHolder.clear();
+	}
+
 	@Override
 	public void afterCompletion(HttpServletRequest request,
 			HttpServletResponse response, Object handler, Exception ex)
@@ -1,5 +1,6 @@
 package biz.deinum.multitenant.aop.target;
 
+import biz.deinum.multitenant.aop.target.registry.ReleasingTargetRegistry;
 import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
 import biz.deinum.multitenant.core.ContextHolder;
 import org.junit.After;
@@ -10,6 +11,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static junit.framework.Assert.assertEquals;
 import static org.mockito.Mockito.*;
@@ -58,4 +60,28 @@ public class ContextSwappableTargetSourceTest {
         assertEquals(defaultTarget, target);
     }
 
+    @Test
+    public void targetIsOnlyReleasedToTheRegistryWhichResolvedIt() throws Exception {
+        final ReleasingTargetRegistry first = mock(ReleasingTargetRegistry.class);
+        final ReleasingTargetRegistry second = mock(ReleasingTargetRegistry.class);
+        when(first.isReleaseRequired()).thenReturn(true);
+        when(second.isReleaseRequired()).thenReturn(true);
+        final Object skipped = new ArrayList();
+        final DummyTestInterface resolved = new DummyTestInterface() {
+        };
+        when(first.getTarget(CONTEXT)).thenReturn(skipped);
+        when(second.getTarget(CONTEXT)).thenReturn(resolved);
+        this.ts.setTargetRegistries(Arrays.<TargetRegistry<?>> asList(first, second));
+        this.ts.getTargetRegistries().remove(this.registry);
+
+        final Object target = this.ts.getTarget();
+        this.ts.releaseTarget(target);
+        this.ts.releaseTarget(target);
+
+        verify(first).release(skipped);
+        verify(first, never()).release(resolved);
+        verify(second, times(1)).release(resolved);
+        verify(second, never()).release(skipped);
+    }
+
 }
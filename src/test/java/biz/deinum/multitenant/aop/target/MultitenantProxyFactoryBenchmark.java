@@ -0,0 +1,63 @@
+package biz.deinum.multitenant.aop.target;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.springframework.aop.framework.ProxyFactory;
+
+import biz.deinum.multitenant.aop.target.registry.impl.MapTargetRegistry;
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * Simple benchmark comparing a {@link MultitenantProxyFactory} proxy with a
+ * Spring AOP proxy for the same {@link ContextSwappableTargetSource}. Not part
+ * of the test suite, run the <code>main</code> method manually; numbers are
+ * indicative only.
+ */
+public class MultitenantProxyFactoryBenchmark {
+
+    private static final int ITERATIONS = 20000000;
+
+    @SuppressWarnings("unchecked")
+    public static void main(final String[] args) throws Exception {
+        final String[] tenants = { "tenant1", "tenant2", "tenant3", "tenant4" };
+        final Map<String, Callable<Integer>> targets = new HashMap<String, Callable<Integer>>();
+        for (int i = 0; i < tenants.length; i++) {
+            final Integer value = i;
+            targets.put(tenants[i], new Callable<Integer>() {
+                public Integer call() {
+                    return value;
+                }
+            });
+        }
+        final MapTargetRegistry<Callable<Integer>> registry = new MapTargetRegistry<Callable<Integer>>();
+        registry.setTargets(targets);
+        final ContextSwappableTargetSource targetSource = new ContextSwappableTargetSource(Callable.class);
+        targetSource.setTargetRegistry(registry);
+
+        final Callable<Integer> aop = (Callable<Integer>) new ProxyFactory(Callable.class, targetSource).getProxy();
+        final Callable<Integer> generated = MultitenantProxyFactory.getProxy(Callable.class, targetSource);
+
+        for (int round = 0; round < 3; round++) {
+            final boolean report = round == 2;
+            run(report, "ProxyFactory", aop, tenants);
+            run(report, "MultitenantProxy", generated, tenants);
+        }
+        ContextHolder.clear();
+    }
+
+    private static void run(final boolean report, final String name, final Callable<Integer> proxy,
+            final String[] tenants) throws Exception {
+        final long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            ContextHolder.setContext(tenants[i & 3]);
+            sum += proxy.call();
+        }
+        if (report) {
+            System.out.printf("%-18s %5.1f ns/op (%d)%n", name, (double) (System.nanoTime() - start) / ITERATIONS,
+                    sum);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package biz.deinum.multitenant.aop.target;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.TargetSource;
+
+import biz.deinum.multitenant.aop.target.registry.impl.MapTargetRegistry;
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class MultitenantProxyFactoryTest {
+
+    private ContextSwappableTargetSource targetSource;
+
+    @Before
+    public void before() {
+        final Map<String, Callable<String>> targets = new HashMap<String, Callable<String>>();
+        targets.put("tenant1", new Fixed("one"));
+        targets.put("tenant2", new Fixed("two"));
+        final MapTargetRegistry<Callable<String>> registry = new MapTargetRegistry<Callable<String>>();
+        registry.setTargets(targets);
+        this.targetSource = new ContextSwappableTargetSource(Callable.class);
+        this.targetSource.setTargetRegistry(registry);
+    }
+
+    @After
+    public void after() {
+        ContextHolder.clear();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void delegatesToTheTargetOfTheCurrentContext() throws Exception {
+        final Callable<String> proxy = MultitenantProxyFactory.getProxy(Callable.class, this.targetSource);
+        ContextHolder.setContext("tenant1");
+        assertEquals("one", proxy.call());
+        ContextHolder.setContext("tenant2");
+        assertEquals("two", proxy.call());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exceptionsOfTheTargetArePropagated() throws Exception {
+        final MapTargetRegistry<Callable<String>> registry = new MapTargetRegistry<Callable<String>>();
+        registry.setTargets(Collections.<String, Callable<String>> singletonMap("tenant1", new Callable<String>() {
+            public String call() throws Exception {
+                throw new IllegalStateException("down");
+            }
+        }));
+        this.targetSource.setTargetRegistry(registry);
+        final Callable<String> proxy = MultitenantProxyFactory.getProxy(Callable.class, this.targetSource);
+        ContextHolder.setContext("tenant1");
+        try {
+            proxy.call();
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("down", e.getMessage());
+        }
+    }
+
+    @Test(expected = TargetLookupFailureException.class)
+    @SuppressWarnings("unchecked")
+    public void unknownContextFailsTheLookup() throws Exception {
+        final Callable<String> proxy = MultitenantProxyFactory.getProxy(Callable.class, this.targetSource);
+        ContextHolder.setContext("unknown");
+        proxy.call();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void equalsAndHashCodeDoNotResolveATarget() {
+        final Callable<String> proxy = MultitenantProxyFactory.getProxy(Callable.class, this.targetSource);
+        final Callable<String> other = MultitenantProxyFactory.getProxy(Callable.class, this.targetSource);
+        assertTrue(proxy.equals(proxy));
+        assertFalse(proxy.equals(other));
+        assertEquals(System.identityHashCode(proxy), proxy.hashCode());
+        assertEquals(proxy.getClass(), other.getClass());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void nonStaticTargetSourceReleasesTheTarget() throws Exception {
+        final CountingTargetSource counting = new CountingTargetSource(new Fixed("one"));
+        final Callable<String> proxy = MultitenantProxyFactory.getProxy(Callable.class, counting);
+        assertEquals("one", proxy.call());
+        assertEquals("one", proxy.call());
+        assertEquals(2, counting.released);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classesCannotBeProxied() {
+        MultitenantProxyFactory.getProxy(Fixed.class, this.targetSource);
+    }
+
+    private static class Fixed implements Callable<String> {
+
+        private final String value;
+
+        Fixed(final String value) {
+            this.value = value;
+        }
+
+        public String call() {
+            return this.value;
+        }
+    }
+
+    private static class CountingTargetSource implements TargetSource {
+
+        private final Object target;
+        private int released;
+
+        CountingTargetSource(final Object target) {
+            this.target = target;
+        }
+
+        public Class<?> getTargetClass() {
+            return Callable.class;
+        }
+
+        public boolean isStatic() {
+            return false;
+        }
+
+        public Object getTarget() {
+            return this.target;
+        }
+
+        public void releaseTarget(final Object target) {
+            this.released++;
+        }
+    }
+}
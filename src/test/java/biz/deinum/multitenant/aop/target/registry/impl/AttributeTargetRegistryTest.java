@@ -0,0 +1,63 @@
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+public class AttributeTargetRegistryTest {
+
+    private static final ContextAttribute<Integer> SHARD = ContextAttribute.of("shard", Integer.class);
+
+    private final DummyTarget shard0 = new DummyTarget();
+    private final DummyTarget shard1 = new DummyTarget();
+    private AttributeTargetRegistry<DummyTarget> registry;
+
+    @Before
+    public void setup() {
+        this.registry = new AttributeTargetRegistry<DummyTarget>(SHARD);
+        final Map<Integer, DummyTarget> targets = new HashMap<Integer, DummyTarget>();
+        targets.put(0, this.shard0);
+        targets.put(1, this.shard1);
+        this.registry.setTargets(targets);
+    }
+
+    @After
+    public void after() {
+        ContextHolder.clear();
+    }
+
+    @Test
+    public void lookupByAttribute() {
+        assertSame(this.shard0, this.registry.getTarget(TenantContext.of("tenant1").with(SHARD, 0)));
+        assertSame(this.shard1, this.registry.getTarget(TenantContext.of("tenant2").with(SHARD, 1)));
+        assertNull(this.registry.getTarget(TenantContext.of("tenant3").with(SHARD, 2)));
+    }
+
+    @Test
+    public void lookupByStringIgnoresTheCurrentContext() {
+        ContextHolder.setTenantContext(TenantContext.of("tenant1").with(SHARD, 1));
+        assertNull(this.registry.getTarget("tenant1"));
+        assertNull(this.registry.getTarget("tenant2"));
+    }
+
+    @Test
+    public void missingAttributeFallsBackToParent() {
+        final DummyTarget parentTarget = new DummyTarget();
+        final MapTargetRegistry<DummyTarget> parent = new MapTargetRegistry<DummyTarget>();
+        parent.setTargets(Collections.singletonMap("tenant1", parentTarget));
+        this.registry.setParentRegistry(parent);
+        assertSame(parentTarget, this.registry.getTarget(TenantContext.of("tenant1")));
+    }
+
+}
@@ -0,0 +1,187 @@
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.core.OrderComparator;
+
+import biz.deinum.multitenant.aop.target.CircuitBreakerInterceptor;
+import biz.deinum.multitenant.aop.target.ContextSwappableTargetSource;
+import biz.deinum.multitenant.aop.target.TargetUnavailableException;
+import biz.deinum.multitenant.aop.target.registry.TargetHealthCheck;
+import biz.deinum.multitenant.aop.target.registry.impl.CircuitBreakerTargetRegistry.State;
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class CircuitBreakerTargetRegistryTest {
+
+    private final DummyTarget primary = new DummyTarget();
+    private final DummyTarget standby = new DummyTarget();
+    private CircuitBreakerTargetRegistry<DummyTarget> registry;
+
+    @Before
+    public void setup() {
+        final MapTargetRegistry<DummyTarget> targets = new MapTargetRegistry<DummyTarget>();
+        targets.setTargets(Collections.singletonMap("tenant1", this.primary));
+        this.registry = new CircuitBreakerTargetRegistry<DummyTarget>(targets);
+        this.registry.setWindowSize(4);
+        this.registry.setMinimumInvocations(4);
+    }
+
+    @After
+    public void after() {
+        ContextHolder.clear();
+    }
+
+    @Test
+    public void circuitOpensAtTheFailureRateAndFailsFast() {
+        this.invoke(false, false, true, true);
+        assertEquals(State.OPEN, this.registry.getState("tenant1"));
+        try {
+            this.registry.getTarget("tenant1");
+            fail("Expected TargetUnavailableException");
+        } catch (final TargetUnavailableException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void belowTheFailureRateTheCircuitStaysClosed() {
+        this.invoke(false, false, false, true, false, false, false, true);
+        assertEquals(State.CLOSED, this.registry.getState("tenant1"));
+    }
+
+    @Test
+    public void openCircuitFailsOverToTheStandby() {
+        final MapTargetRegistry<DummyTarget> standbys = new MapTargetRegistry<DummyTarget>();
+        standbys.setTargets(Collections.singletonMap("tenant1", this.standby));
+        this.registry.setStandbyRegistry(standbys);
+        this.invoke(true, true, true, true);
+        assertSame(this.standby, this.registry.getTarget("tenant1"));
+        // outcomes of the standby do not affect the circuit of the primary
+        this.registry.recordSuccess("tenant1", this.standby);
+        assertEquals(State.OPEN, this.registry.getState("tenant1"));
+    }
+
+    @Test
+    public void halfOpenTrialClosesTheCircuit() {
+        this.registry.setOpenDuration(0);
+        this.invoke(true, true, true, true);
+        assertSame(this.primary, this.registry.getTarget("tenant1"));
+        assertEquals(State.HALF_OPEN, this.registry.getState("tenant1"));
+        this.registry.recordSuccess("tenant1", this.primary);
+        assertEquals(State.CLOSED, this.registry.getState("tenant1"));
+    }
+
+    @Test
+    public void probeClosesTheCircuitOfARecoveredTarget() {
+        this.registry.setHealthCheck(new TargetHealthCheck<DummyTarget>() {
+            public boolean isHealthy(final DummyTarget target) {
+                return true;
+            }
+        });
+        this.invoke(true, true, true, true);
+        this.registry.probe();
+        assertEquals(State.CLOSED, this.registry.getState("tenant1"));
+    }
+
+    @Test
+    public void onlyConfiguredExceptionsCountAsFailures() {
+        this.registry.setFailureExceptions(Collections.<Class<? extends Throwable>> singletonList(
+                IllegalStateException.class));
+        for (int i = 0; i < 4; i++) {
+            this.registry.getTarget("tenant1");
+            this.registry.recordFailure("tenant1", this.primary, new IllegalArgumentException());
+        }
+        assertEquals(State.CLOSED, this.registry.getState("tenant1"));
+    }
+
+    @Test
+    public void breakersAreBoundedByMaxContexts() {
+        final Map<String, DummyTarget> targets = new HashMap<String, DummyTarget>();
+        for (int i = 0; i < 10; i++) {
+            targets.put("tenant" + i, new DummyTarget());
+        }
+        final MapTargetRegistry<DummyTarget> delegate = new MapTargetRegistry<DummyTarget>();
+        delegate.setTargets(targets);
+        final CircuitBreakerTargetRegistry<DummyTarget> bounded = new CircuitBreakerTargetRegistry<DummyTarget>(
+                delegate);
+        bounded.setMaxContexts(2);
+        final DummyTarget failing = bounded.getTarget("tenant0");
+        bounded.recordFailure("tenant0", failing, new IllegalStateException());
+        for (int i = 1; i < 10; i++) {
+            bounded.getTarget("tenant" + i);
+        }
+        assertEquals(2, bounded.getBreakerCount());
+        // the breaker with failures is kept
+        assertSame(failing, bounded.getTarget("tenant0"));
+        assertEquals(2, bounded.getBreakerCount());
+        // lookups without target drop the breaker
+        delegate.setTargets(Collections.<String, DummyTarget> emptyMap());
+        bounded.getTarget("tenant0");
+        assertEquals(1, bounded.getBreakerCount());
+    }
+
+    @Test
+    public void registryIsOrderedBeforeOtherRegistries() {
+        final MapTargetRegistry<DummyTarget> delegate = new MapTargetRegistry<DummyTarget>();
+        assertTrue(OrderComparator.INSTANCE.compare(this.registry, delegate) < 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void interceptorReportsInvocationsOnTheProxy() throws Exception {
+        final MapTargetRegistry<Callable<String>> targets = new MapTargetRegistry<Callable<String>>();
+        targets.setTargets(Collections.<String, Callable<String>> singletonMap("tenant1", new Callable<String>() {
+            public String call() {
+                throw new IllegalStateException("down");
+            }
+        }));
+        final CircuitBreakerTargetRegistry<Callable<String>> breaker = new CircuitBreakerTargetRegistry<Callable<String>>(
+                targets);
+        breaker.setMinimumInvocations(2);
+        final ContextSwappableTargetSource targetSource = new ContextSwappableTargetSource(Callable.class);
+        targetSource.setTargetRegistry(breaker);
+        final ProxyFactory factory = new ProxyFactory(Callable.class, targetSource);
+        factory.addAdvice(new CircuitBreakerInterceptor(breaker));
+        final Callable<String> proxy = (Callable<String>) factory.getProxy();
+
+        ContextHolder.setContext("tenant1");
+        for (int i = 0; i < 2; i++) {
+            try {
+                proxy.call();
+                fail("Expected IllegalStateException");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+        }
+        try {
+            proxy.call();
+            fail("Expected TargetUnavailableException");
+        } catch (final TargetUnavailableException e) {
+            // expected
+        }
+    }
+
+    private void invoke(final boolean... failures) {
+        for (final boolean failure : failures) {
+            final DummyTarget target = this.registry.getTarget("tenant1");
+            if (failure) {
+                this.registry.recordFailure("tenant1", target, new IllegalStateException());
+            } else {
+                this.registry.recordSuccess("tenant1", target);
+            }
+        }
+    }
+
+}
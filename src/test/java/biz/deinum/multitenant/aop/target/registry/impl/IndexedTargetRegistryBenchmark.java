@@ -0,0 +1,77 @@
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.core.TenantId;
+
+/**
+ * Simple lookup benchmark comparing {@link MapTargetRegistry},
+ * {@link SimpleCachingTargetRegistry} and {@link IndexedTargetRegistry} at
+ * 10, 1.000 and 100.000 tenants. Not part of the test suite, run the 
+ * <code>main</code> method manually; numbers are indicative only.
+ */
+public class IndexedTargetRegistryBenchmark {
+
+    private static final int LOOKUPS = 10000000;
+
+    public static void main(final String[] args) {
+        for (final int tenants : new int[] { 10, 1000, 100000 }) {
+            final String[] contexts = new String[tenants];
+            final TenantId[] tenantIds = new TenantId[tenants];
+            final Map<String, Object> targets = new HashMap<String, Object>();
+            for (int i = 0; i < tenants; i++) {
+                contexts[i] = "benchmark-" + i;
+                tenantIds[i] = TenantId.of(contexts[i]);
+                targets.put(contexts[i], new Object());
+            }
+            final MapTargetRegistry<Object> map = new MapTargetRegistry<Object>();
+            map.setTargets(targets);
+            final SimpleCachingTargetRegistry<Object> caching = new SimpleCachingTargetRegistry<Object>(map);
+            final IndexedTargetRegistry<Object> indexed = new IndexedTargetRegistry<Object>();
+            indexed.setTargets(targets);
+
+            for (int round = 0; round < 3; round++) {
+                final boolean report = round == 2;
+                run(report, tenants, "MapTargetRegistry", map, contexts);
+                run(report, tenants, "SimpleCachingTargetRegistry", caching, contexts);
+                run(report, tenants, "IndexedTargetRegistry(String)", indexed, contexts);
+                runIndexed(report, tenants, indexed, tenantIds);
+            }
+        }
+    }
+
+    private static void run(final boolean report, final int tenants, final String name,
+            final TargetRegistry<Object> registry, final String[] contexts) {
+        int found = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (registry.getTarget(contexts[i % contexts.length]) != null) {
+                found++;
+            }
+        }
+        print(report, tenants, name, System.nanoTime() - start, found);
+    }
+
+    private static void runIndexed(final boolean report, final int tenants,
+            final IndexedTargetRegistry<Object> registry, final TenantId[] tenantIds) {
+        int found = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (registry.getTarget(tenantIds[i % tenantIds.length]) != null) {
+                found++;
+            }
+        }
+        print(report, tenants, "IndexedTargetRegistry(TenantId)", System.nanoTime() - start, found);
+    }
+
+    private static void print(final boolean report, final int tenants, final String name, final long nanos,
+            final int found) {
+        if (report) {
+            System.out.printf("%7d tenants  %-32s %6.1f ns/lookup (%d found)%n", tenants, name,
+                    (double) nanos / LOOKUPS, found);
+        }
+    }
+
+}
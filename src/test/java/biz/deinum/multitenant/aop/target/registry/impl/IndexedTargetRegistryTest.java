@@ -0,0 +1,72 @@
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.deinum.multitenant.core.TenantId;
+
+public class IndexedTargetRegistryTest {
+
+    private IndexedTargetRegistry<DummyTarget> registry;
+
+    @Before
+    public void setup() {
+        this.registry = new IndexedTargetRegistry<DummyTarget>();
+    }
+
+    @Test
+    public void lookupByStringAndTenantId() {
+        final DummyTarget target = new DummyTarget();
+        this.registry.register("indexed-1", target);
+        assertSame(target, this.registry.getTarget("indexed-1"));
+        assertSame(target, this.registry.getTarget(TenantId.of("indexed-1")));
+        assertNull(this.registry.getTarget("indexed-unknown"));
+        assertNull(this.registry.getTarget((String) null));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        final Map<String, DummyTarget> targets = new HashMap<String, DummyTarget>();
+        for (int i = 0; i < 100; i++) {
+            targets.put("indexed-grow-" + i, new DummyTarget());
+        }
+        this.registry.setTargets(targets);
+        final DummyTarget extra = new DummyTarget();
+        this.registry.register("indexed-grow-extra", extra);
+        for (final Map.Entry<String, DummyTarget> entry : targets.entrySet()) {
+            assertSame(entry.getValue(), this.registry.getTarget(TenantId.of(entry.getKey())));
+        }
+        assertSame(extra, this.registry.getTarget("indexed-grow-extra"));
+    }
+
+    @Test
+    public void lookupAndRemoveDoNotInternUnknownContexts() {
+        final int count = TenantId.count();
+        assertNull(this.registry.getTarget("indexed-junk-1"));
+        this.registry.remove("indexed-junk-2");
+        this.registry.remove(null);
+        assertEquals(count, TenantId.count());
+    }
+
+    @Test
+    public void removedTargetFallsBackToParent() {
+        final DummyTarget target = new DummyTarget();
+        final DummyTarget parentTarget = new DummyTarget();
+        final MapTargetRegistry<DummyTarget> parent = new MapTargetRegistry<DummyTarget>();
+        parent.setTargets(Collections.singletonMap("indexed-2", parentTarget));
+        this.registry.setParentRegistry(parent);
+        this.registry.register("indexed-2", target);
+        assertSame(target, this.registry.getTarget(TenantId.of("indexed-2")));
+        this.registry.remove("indexed-2");
+        assertSame(parentTarget, this.registry.getTarget(TenantId.of("indexed-2")));
+    }
+
+}
@@ -0,0 +1,120 @@
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextScope;
+import biz.deinum.multitenant.core.TenantContext;
+
+public class ReadWriteTargetRegistryTest {
+
+    private final DummyTarget primary = new DummyTarget();
+    private final DummyTarget replica1 = new DummyTarget();
+    private final DummyTarget replica2 = new DummyTarget();
+    private ReadWriteTargetRegistry<DummyTarget> registry;
+
+    @Before
+    public void setup() {
+        this.registry = new ReadWriteTargetRegistry<DummyTarget>();
+        this.registry.setPrimaryTargets(Collections.singletonMap("tenant1", this.primary));
+        this.registry.setReplicaTargets(Collections.<String, List<DummyTarget>> singletonMap("tenant1",
+                Arrays.asList(this.replica1, this.replica2)));
+        ContextHolder.setContext("tenant1");
+    }
+
+    @After
+    public void after() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ContextHolder.clear();
+    }
+
+    @Test
+    public void writesGoToThePrimary() {
+        assertSame(this.primary, this.registry.getTarget("tenant1"));
+        assertSame(this.primary, this.registry.getTarget(TenantContext.of("tenant1")));
+    }
+
+    @Test
+    public void readOnlyTransactionsGoToAReplica() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        final DummyTarget target = this.registry.getTarget("tenant1");
+        assertNotSame(this.primary, target);
+        assertSame(this.primary, this.registry.getTarget(TenantContext.of("tenant1").with(
+                ReadWriteTargetRegistry.READ_ONLY, false)));
+    }
+
+    @Test
+    public void lookupByStringIgnoresTheHintOfTheCurrentContext() {
+        try (ContextScope scope = ContextHolder.withTenantContext(TenantContext.of("tenant1").with(
+                ReadWriteTargetRegistry.READ_ONLY, true))) {
+            assertSame(this.primary, this.registry.getTarget("tenant1"));
+        }
+    }
+
+    @Test
+    public void readsGoToTheReplicaWithTheFewestActiveInvocations() {
+        final TenantContext read = TenantContext.of("tenant1").with(ReadWriteTargetRegistry.READ_ONLY, true);
+        final DummyTarget first = this.registry.getTarget(read);
+        final DummyTarget second = this.registry.getTarget(read);
+        assertNotSame(first, second);
+        this.registry.release(second);
+        assertSame(second, this.registry.getTarget(read));
+        assertEquals(1, this.registry.getActiveInvocations(this.replica1));
+        assertEquals(1, this.registry.getActiveInvocations(this.replica2));
+        this.registry.release(this.replica1);
+        this.registry.release(this.replica2);
+        this.registry.release(this.replica2);
+        assertEquals(0, this.registry.getActiveInvocations(this.replica2));
+    }
+
+    @Test
+    public void releasingAPrimaryDoesNotDecrementItsUseAsReplica() {
+        final Map<String, DummyTarget> primaries = new HashMap<String, DummyTarget>();
+        primaries.put("tenant1", this.primary);
+        primaries.put("tenant2", this.replica1);
+        this.registry.setPrimaryTargets(primaries);
+        this.registry.setReplicaTargets(Collections.<String, List<DummyTarget>> singletonMap("tenant1",
+                Collections.singletonList(this.replica1)));
+        assertSame(this.replica1,
+                this.registry.getTarget(TenantContext.of("tenant1").with(ReadWriteTargetRegistry.READ_ONLY, true)));
+        assertSame(this.replica1, this.registry.getTarget(TenantContext.of("tenant2")));
+        assertEquals(2, this.registry.getActiveInvocations(this.replica1));
+        this.registry.release(this.replica1);
+        assertEquals(1, this.registry.getActiveInvocations(this.replica1));
+    }
+
+    @Test
+    public void releaseIsPassedOnByChainingAndWrappingRegistries() {
+        final MapTargetRegistry<DummyTarget> child = new MapTargetRegistry<DummyTarget>();
+        child.setParentRegistry(this.registry);
+        final CircuitBreakerTargetRegistry<DummyTarget> breaker = new CircuitBreakerTargetRegistry<DummyTarget>(child);
+        assertTrue(breaker.isReleaseRequired());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        final DummyTarget target = breaker.getTarget("tenant1");
+        assertEquals(1, this.registry.getActiveInvocations(target));
+        breaker.release(target);
+        assertEquals(0, this.registry.getActiveInvocations(target));
+    }
+
+    @Test
+    public void tenantsWithoutReplicasUseThePrimary() {
+        this.registry.setReplicaTargets(Collections.<String, List<DummyTarget>> emptyMap());
+        assertSame(this.primary,
+                this.registry.getTarget(TenantContext.of("tenant1").with(ReadWriteTargetRegistry.READ_ONLY, true)));
+    }
+
+}
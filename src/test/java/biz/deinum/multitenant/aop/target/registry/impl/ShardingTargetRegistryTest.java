@@ -0,0 +1,121 @@
+package biz.deinum.multitenant.aop.target.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.deinum.multitenant.core.TenantId;
+
+public class ShardingTargetRegistryTest {
+
+    private static final int TENANTS = 10000;
+
+    private final Map<String, DummyTarget> targets = new LinkedHashMap<String, DummyTarget>();
+    private ShardingTargetRegistry<DummyTarget> registry;
+
+    @Before
+    public void setup() {
+        for (int i = 0; i < 4; i++) {
+            this.targets.put("shard" + i, new DummyTarget());
+        }
+        this.registry = new ShardingTargetRegistry<DummyTarget>();
+        this.registry.setTargets(this.targets);
+    }
+
+    @Test
+    public void tenantsAreSpreadOverAllShards() {
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < TENANTS; i++) {
+            final String shard = this.registry.getShard("tenant" + i);
+            counts.put(shard, counts.containsKey(shard) ? counts.get(shard) + 1 : 1);
+        }
+        assertEquals(4, counts.size());
+        for (final int count : counts.values()) {
+            assertTrue("Uneven spread " + counts, count > TENANTS / 4 / 2 && count < TENANTS / 4 * 2);
+        }
+    }
+
+    @Test
+    public void lookupByStringAndTenantIdReturnTheShardTarget() {
+        final String shard = this.registry.getShard("tenant1");
+        assertSame(this.targets.get(shard), this.registry.getTarget("tenant1"));
+        assertSame(this.targets.get(shard), this.registry.getTarget(TenantId.of("tenant1")));
+    }
+
+    @Test
+    public void lookupDoesNotInternTheTenant() {
+        final int count = TenantId.count();
+        assertNotNull(this.registry.getTarget("unknown-tenant-" + count));
+        assertEquals(count, TenantId.count());
+    }
+
+    @Test
+    public void addingAShardOnlyMovesTenantsToTheNewShard() {
+        final Map<String, String> before = this.assignments();
+        this.registry.addTarget("shard4", new DummyTarget());
+        final Map<String, String> after = this.assignments();
+        int moved = 0;
+        for (final String tenant : before.keySet()) {
+            if (!before.get(tenant).equals(after.get(tenant))) {
+                assertEquals("shard4", after.get(tenant));
+                moved++;
+            }
+        }
+        // Ideally 1/5 of the tenants move
+        assertTrue("Moved " + moved, moved > TENANTS / 5 / 2 && moved < TENANTS / 5 * 2);
+    }
+
+    @Test
+    public void removingAShardOnlyMovesItsOwnTenants() {
+        final Map<String, String> before = this.assignments();
+        this.registry.removeTarget("shard0");
+        final Map<String, String> after = this.assignments();
+        for (final String tenant : before.keySet()) {
+            if (!before.get(tenant).equals("shard0")) {
+                assertEquals(before.get(tenant), after.get(tenant));
+            }
+        }
+    }
+
+    @Test
+    public void overridesPinTenantsToAShard() {
+        final String shard = this.registry.getShard("large-tenant").equals("shard0") ? "shard1" : "shard0";
+        this.registry.setOverrides(Collections.singletonMap("large-tenant", shard));
+        assertSame(this.targets.get(shard), this.registry.getTarget(TenantId.of("large-tenant")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overrideToAnUnknownShardIsRejected() {
+        this.registry.setOverrides(Collections.singletonMap("large-tenant", "unknown"));
+    }
+
+    @Test
+    public void withoutShardsTheParentIsUsed() {
+        final DummyTarget parentTarget = new DummyTarget();
+        final MapTargetRegistry<DummyTarget> parent = new MapTargetRegistry<DummyTarget>();
+        parent.setTargets(Collections.singletonMap("tenant1", parentTarget));
+        final ShardingTargetRegistry<DummyTarget> empty = new ShardingTargetRegistry<DummyTarget>();
+        empty.setParentRegistry(parent);
+        assertNull(empty.getShard("tenant1"));
+        assertSame(parentTarget, empty.getTarget(TenantId.of("tenant1")));
+    }
+
+    private Map<String, String> assignments() {
+        final Map<String, String> assignments = new HashMap<String, String>();
+        for (int i = 0; i < TENANTS; i++) {
+            assignments.put("tenant" + i, this.registry.getShard("tenant" + i));
+        }
+        return assignments;
+    }
+
+}
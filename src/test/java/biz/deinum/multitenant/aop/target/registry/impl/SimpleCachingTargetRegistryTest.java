@@ -1,6 +1,7 @@
 package biz.deinum.multitenant.aop.target.registry.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.core.TenantId;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SimpleCachingTargetRegistryTest {
@@ -45,4 +47,21 @@ public class SimpleCachingTargetRegistryTest {
         assertEquals(result, result2);
     }
 
+    @Test
+    public void unknownContextIsNotInterned() {
+        final int count = TenantId.count();
+        assertNull(this.cachingRegistry.getTarget("unknown-caching-context"));
+        assertNull(TenantId.find("unknown-caching-context"));
+        assertEquals(count, TenantId.count());
+    }
+
+    @Test
+    public void tenantIdAndStringShareTheCache() {
+        final DummyTarget dummyTarget = new DummyTarget();
+        when(this.target.getTarget("test")).thenReturn(dummyTarget);
+        assertEquals(dummyTarget, this.cachingRegistry.getTarget(TenantId.of("test")));
+        assertEquals(dummyTarget, this.cachingRegistry.getTarget("test"));
+        verify(this.target, times(1)).getTarget("test");
+    }
+
 }
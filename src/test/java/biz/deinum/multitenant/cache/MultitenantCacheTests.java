@@ -8,6 +8,7 @@ import org.springframework.cache.concurrent.ConcurrentMapCache;
 
 import biz.deinum.multitenant.aop.target.TargetLookupFailureException;
 import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextSnapshot;
 
 public class MultitenantCacheTests {
 
@@ -45,6 +46,21 @@ public class MultitenantCacheTests {
 		c.get(null);
 	}
 	
+	@Test
+	public void testSnapshotIsUsedInsteadOfTheCurrentContext() {
+		MultitenantCache c = new MultitenantCache(this.delegate, true);
+		ContextSnapshot snapshot = ContextSnapshot.of("context1");
+		ContextHolder.setContext(null);
+		c.put(snapshot, "key", "value");
+		Assert.assertEquals("value", c.get(snapshot, "key").get());
+		Assert.assertNull(c.get(ContextSnapshot.of("context2"), "key"));
+		ContextHolder.setContext("context1");
+		Assert.assertEquals("value", c.get("key").get());
+		c.evict(snapshot, "key");
+		Assert.assertNull(c.get("key"));
+		ContextHolder.setContext(null);
+	}
+	
 	@Test
 	public void testContextSwitch() {
 		MultitenantCache c = new MultitenantCache(this.delegate, false);
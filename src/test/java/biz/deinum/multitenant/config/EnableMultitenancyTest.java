@@ -0,0 +1,140 @@
+package biz.deinum.multitenant.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import biz.deinum.multitenant.aop.target.SharedTargetRegistries;
+import biz.deinum.multitenant.aop.target.registry.TargetRegistry;
+import biz.deinum.multitenant.aop.target.registry.impl.MapTargetRegistry;
+import biz.deinum.multitenant.config.routed.Counter;
+import biz.deinum.multitenant.config.routed.Greeter;
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class EnableMultitenancyTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    @Before
+    public void before() {
+        this.context = new AnnotationConfigApplicationContext(Config.class);
+    }
+
+    @After
+    public void after() {
+        ContextHolder.clear();
+        this.context.close();
+    }
+
+    @Test
+    public void routedInterfacesAreRegistered() {
+        assertTrue(this.context.containsBean("greeter"));
+        assertTrue(this.context.containsBean("tenantCounter"));
+    }
+
+    @Test
+    public void proxyRoutesToTheTargetOfTheCurrentContext() {
+        final Greeter greeter = this.context.getBean(Config.class).greeter;
+        ContextHolder.setContext("tenant1");
+        assertEquals("hello tenant1", greeter.greet());
+        ContextHolder.setContext("tenant2");
+        assertEquals("hello tenant2", greeter.greet());
+    }
+
+    @Test
+    public void defaultTargetIsUsedForUnknownContexts() {
+        final Greeter greeter = this.context.getBean(Greeter.class);
+        ContextHolder.setContext("unknown");
+        assertEquals("hello default", greeter.greet());
+    }
+
+    @Test
+    public void registriesAreDiscoveredOnceAndSorted() {
+        final SharedTargetRegistries shared = this.context.getBean(SharedTargetRegistries.class);
+        final List<TargetRegistry<?>> registries = shared.getTargetRegistries();
+        assertEquals(2, registries.size());
+        assertSame(this.context.getBean("greeters"), registries.get(0));
+        assertSame(registries, shared.getTargetRegistries());
+
+        final Counter counter = this.context.getBean(Counter.class);
+        ContextHolder.setContext("tenant3");
+        assertEquals(1, counter.count());
+    }
+
+    @Test
+    public void oneTenantCanHaveTargetsForSeveralInterfaces() {
+        final Greeter greeter = this.context.getBean(Greeter.class);
+        final Counter counter = this.context.getBean(Counter.class);
+        ContextHolder.setContext("tenant1");
+        assertEquals("hello tenant1", greeter.greet());
+        assertEquals(2, counter.count());
+    }
+
+    @Configuration
+    @EnableMultitenancy(basePackageClasses = Greeter.class)
+    static class Config {
+
+        @Autowired
+        Greeter greeter;
+
+        @Bean
+        public MapTargetRegistry<Object> greeters() {
+            final Map<String, Object> targets = new HashMap<String, Object>();
+            targets.put("tenant1", new FixedGreeter("hello tenant1"));
+            targets.put("tenant2", new FixedGreeter("hello tenant2"));
+            final MapTargetRegistry<Object> registry = new MapTargetRegistry<Object>();
+            registry.setTargets(targets);
+            registry.setOrder(1);
+            return registry;
+        }
+
+        @Bean
+        public MapTargetRegistry<Object> counters() {
+            final Map<String, Object> targets = new HashMap<String, Object>();
+            targets.put("tenant1", new Counter() {
+                public int count() {
+                    return 2;
+                }
+            });
+            targets.put("tenant3", new Counter() {
+                public int count() {
+                    return 1;
+                }
+            });
+            final MapTargetRegistry<Object> registry = new MapTargetRegistry<Object>();
+            registry.setTargets(targets);
+            registry.setOrder(2);
+            return registry;
+        }
+
+        @Bean
+        public Greeter defaultGreeter() {
+            return new FixedGreeter("hello default");
+        }
+    }
+
+    static class FixedGreeter implements Greeter {
+
+        private final String greeting;
+
+        FixedGreeter(final String greeting) {
+            this.greeting = greeting;
+        }
+
+        public String greet() {
+            return this.greeting;
+        }
+    }
+}
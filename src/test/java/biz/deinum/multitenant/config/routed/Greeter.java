@@ -0,0 +1,9 @@
+package biz.deinum.multitenant.config.routed;
+
+import biz.deinum.multitenant.config.TenantRouted;
+
+@TenantRouted(defaultTarget = "defaultGreeter")
+public interface Greeter {
+
+    String greet();
+}
@@ -0,0 +1,158 @@
+package biz.deinum.multitenant.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the ContextHolder strategies.
+ */
+public class ContextHolderTest {
+
+	@After
+	public void after() {
+		ContextHolder.setStrategyName(ContextHolder.MODE_THREADLOCAL);
+	}
+
+	@Test
+	public void whenNoStrategyIsSelectedThenTheContextShouldNotBeInherited() throws Exception {
+		ContextHolder.setContext("tenant1");
+		assertEquals("tenant1", ContextHolder.getContext());
+		assertNull(contextInChildThread());
+	}
+
+	@Test
+	public void whenInheritableThenChildThreadsShouldStartWithTheContext() throws Exception {
+		ContextHolder.setStrategyName(ContextHolder.MODE_INHERITABLETHREADLOCAL);
+		ContextHolder.setContext("tenant1");
+		assertEquals("tenant1", contextInChildThread());
+	}
+
+	@Test
+	public void whenSelectedByClassNameThenTheCustomStrategyShouldBeUsed() {
+		ContextHolder.setStrategyName(FixedContextHolderStrategy.class.getName());
+		assertTrue(ContextHolder.getContextHolderStrategy() instanceof FixedContextHolderStrategy);
+		assertEquals("fixed", ContextHolder.getContext());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenTheStrategyCannotBeCreatedThenAnExceptionShouldBeThrown() {
+		ContextHolder.setStrategyName("no.such.Strategy");
+	}
+
+	@Test
+	public void whenScopesAreNestedThenEachCloseShouldRestoreThePreviousContext() {
+		ContextHolder.setContext("tenant1");
+		try (ContextScope outer = ContextHolder.withContext("tenant2")) {
+			try (ContextScope inner = ContextHolder.withContext("tenant3")) {
+				assertEquals("tenant3", ContextHolder.getContext());
+				assertEquals(2, inner.getDepth());
+			}
+			assertEquals("tenant2", ContextHolder.getContext());
+		}
+		assertEquals("tenant1", ContextHolder.getContext());
+	}
+
+	@Test
+	public void whenTheScopeIsClosedAfterAnExceptionThenTheContextShouldBeRestored() {
+		ContextHolder.clear();
+		try (ContextScope scope = ContextHolder.withContext("tenant1")) {
+			throw new IllegalStateException();
+		} catch (IllegalStateException e) {
+			assertNull(ContextHolder.getContext());
+		}
+	}
+
+	@Test
+	public void whenClosedTooOftenThenTheContextShouldBeLeftAlone() {
+		ContextScope scope = ContextHolder.withContext("tenant1");
+		scope.close();
+		ContextHolder.setContext("tenant2");
+		scope.close();
+		assertEquals("tenant2", ContextHolder.getContext());
+	}
+
+	@Test
+	public void whenAnInnerScopeIsClosedTwiceThenTheOuterScopeShouldStayOpen() {
+		ContextHolder.clear();
+		ContextScope outer = ContextHolder.withContext("tenant1");
+		ContextScope inner = ContextHolder.withContext("tenant2");
+		inner.close();
+		inner.close();
+		assertEquals("tenant1", ContextHolder.getContext());
+		outer.close();
+		assertNull(ContextHolder.getContext());
+	}
+
+	@Test
+	public void whenAStaleScopeIsClosedAgainThenTheNewerScopeAtItsLevelShouldStayOpen() {
+		ContextHolder.clear();
+		ContextScope stale = ContextHolder.withContext("tenant1");
+		stale.close();
+		ContextScope current = ContextHolder.withContext("tenant2");
+		stale.close();
+		assertEquals("tenant2", ContextHolder.getContext());
+		assertEquals(1, current.getDepth());
+		current.close();
+		assertNull(ContextHolder.getContext());
+	}
+
+	@Test
+	public void whenScopesAreClosedOutOfOrderThenItShouldFail() {
+		ContextHolder.clear();
+		ContextScope outer = ContextHolder.withContext("tenant1");
+		ContextScope inner = ContextHolder.withContext("tenant2");
+		try {
+			outer.close();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("tenant2", ContextHolder.getContext());
+		}
+		inner.close();
+		outer.close();
+		assertNull(ContextHolder.getContext());
+	}
+
+	@Test
+	public void whenTheSameTenantIsOpenedAgainThenItsContextShouldBeReused() {
+		TenantContext first;
+		try (ContextScope scope = ContextHolder.withContext("tenant1")) {
+			first = ContextHolder.getTenantContext();
+		}
+		try (ContextScope scope = ContextHolder.withContext("tenant1")) {
+			assertSame(first, ContextHolder.getTenantContext());
+		}
+	}
+
+	private static String contextInChildThread() throws InterruptedException {
+		final AtomicReference<String> context = new AtomicReference<String>();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				context.set(ContextHolder.getContext());
+			}
+		});
+		thread.start();
+		thread.join();
+		return context.get();
+	}
+
+	public static class FixedContextHolderStrategy implements ContextHolderStrategy {
+
+		public void setContext(TenantContext context) {
+		}
+
+		public TenantContext getContext() {
+			return TenantContext.of("fixed");
+		}
+
+		public void clearContext() {
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package biz.deinum.multitenant.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import biz.deinum.multitenant.core.ContextLeakDetector.Level;
+
+/**
+ * Tests for the ContextLeakDetector.
+ */
+public class ContextLeakDetectorTest {
+
+	@After
+	public void after() {
+		ContextLeakDetector.setLevel(Level.DISABLED);
+		ContextHolder.clear();
+	}
+
+	@Test
+	public void whenDisabledThenLeaksShouldBeIgnored() {
+		long leaks = ContextLeakDetector.getLeakCount();
+		ContextHolder.setContext("tenant1");
+		ContextLeakDetector.checkCleared("test");
+		assertEquals("tenant1", ContextHolder.getContext());
+		assertEquals(leaks, ContextLeakDetector.getLeakCount());
+	}
+
+	@Test
+	public void whenAContextIsLeftBehindThenItShouldBeReportedAndCleared() {
+		ContextLeakDetector.setLevel(Level.SIMPLE);
+		long leaks = ContextLeakDetector.getLeakCount();
+		ContextHolder.setContext("tenant1");
+		ContextLeakDetector.checkCleared("test");
+		assertNull(ContextHolder.getContext());
+		assertEquals(leaks + 1, ContextLeakDetector.getLeakCount());
+	}
+
+	@Test
+	public void whenTheContextIsRestoredThenNoLeakShouldBeReported() {
+		ContextLeakDetector.setLevel(Level.PARANOID);
+		long leaks = ContextLeakDetector.getLeakCount();
+		ContextHolder.setContext("tenant1");
+		try (ContextScope scope = ContextHolder.withContext("tenant2")) {
+			assertEquals("tenant2", ContextHolder.getContext());
+		}
+		ContextLeakDetector.checkRestored("tenant1", "test");
+		ContextHolder.clear();
+		ContextLeakDetector.checkCleared("test");
+		assertEquals(leaks, ContextLeakDetector.getLeakCount());
+	}
+
+	@Test
+	public void whenATaskChangesTheContextThenTheExpectedContextShouldBeRestored() {
+		ContextLeakDetector.setLevel(Level.ADVANCED);
+		ContextLeakDetector.setSamplingInterval(1);
+		long leaks = ContextLeakDetector.getLeakCount();
+		ContextHolder.setContext("tenant1");
+		ContextHolder.setContext("tenant2");
+		ContextLeakDetector.checkRestored("tenant1", "test");
+		assertEquals("tenant1", ContextHolder.getContext());
+		assertEquals(leaks + 1, ContextLeakDetector.getLeakCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenTheSamplingIntervalIsInvalidThenAnExceptionShouldBeThrown() {
+		ContextLeakDetector.setSamplingInterval(0);
+	}
+}
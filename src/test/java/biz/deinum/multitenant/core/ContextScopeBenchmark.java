@@ -0,0 +1,50 @@
+package biz.deinum.multitenant.core;
+
+/**
+ * Simple benchmark comparing {@link ContextHolder#withContext(String)} with
+ * the manual get/set/clear pattern, as run on a pooled thread. Not part of
+ * the test suite, run the <code>main</code> method manually; numbers are
+ * indicative only.
+ */
+public class ContextScopeBenchmark {
+
+	private static final int ITERATIONS = 20000000;
+
+	public static void main(final String[] args) {
+		final String[] tenants = { "tenant1", "tenant2", "tenant3", "tenant4" };
+		for (int round = 0; round < 3; round++) {
+			final boolean report = round == 2;
+			long start = System.nanoTime();
+			int hits = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				final String previous = ContextHolder.getContext();
+				ContextHolder.setContext(tenants[i & 3]);
+				try {
+					hits += ContextHolder.getContext().length();
+				} finally {
+					if (previous != null) {
+						ContextHolder.setContext(previous);
+					} else {
+						ContextHolder.clear();
+					}
+				}
+			}
+			print(report, "manual set/clear", System.nanoTime() - start, hits);
+
+			start = System.nanoTime();
+			hits = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				try (ContextScope scope = ContextHolder.withContext(tenants[i & 3])) {
+					hits += ContextHolder.getContext().length();
+				}
+			}
+			print(report, "withContext", System.nanoTime() - start, hits);
+		}
+	}
+
+	private static void print(final boolean report, final String name, final long nanos, final int hits) {
+		if (report) {
+			System.out.printf("%-18s %5.1f ns/op (%d)%n", name, (double) nanos / ITERATIONS, hits);
+		}
+	}
+}
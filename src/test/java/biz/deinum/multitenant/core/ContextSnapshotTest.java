@@ -0,0 +1,51 @@
+package biz.deinum.multitenant.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the ContextSnapshot.
+ */
+public class ContextSnapshotTest {
+
+	@After
+	public void after() {
+		ContextHolder.clear();
+	}
+
+	@Test
+	public void whenAppliedThenThePreviousContextShouldBeRestored() throws Exception {
+		ContextHolder.setContext("tenant1");
+		ContextSnapshot snapshot = ContextSnapshot.capture();
+		ContextHolder.setContext("tenant2");
+		assertEquals("tenant1", snapshot.call(new CurrentContext()));
+		assertEquals("tenant2", ContextHolder.getContext());
+	}
+
+	@Test
+	public void whenWrappedThenTheTaskShouldRunWithTheContextOnAnotherThread() throws Exception {
+		ContextHolder.setContext("tenant1");
+		Callable<String> task = ContextSnapshot.capture().wrap(new CurrentContext());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertEquals("tenant1", executor.submit(task).get());
+			assertNull(executor.submit(new CurrentContext()).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static class CurrentContext implements Callable<String> {
+
+		public String call() {
+			return ContextHolder.getContext();
+		}
+	}
+}
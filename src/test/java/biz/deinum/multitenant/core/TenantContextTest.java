@@ -0,0 +1,69 @@
+package biz.deinum.multitenant.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the TenantContext.
+ */
+public class TenantContextTest {
+
+	private static final ContextAttribute<String> REGION = ContextAttribute.of("region", String.class);
+	private static final ContextAttribute<Integer> SHARD = ContextAttribute.of("shard", Integer.class);
+
+	@After
+	public void after() {
+		ContextHolder.clear();
+	}
+
+	@Test
+	public void whenAttributesAreAddedThenTheOriginalShouldBeUnchanged() {
+		TenantContext context = TenantContext.of("tenant1");
+		TenantContext sharded = context.with(SHARD, 3).with(REGION, "eu");
+		assertNull(context.getAttribute(SHARD));
+		assertEquals(Integer.valueOf(3), sharded.getAttribute(SHARD));
+		assertEquals("eu", sharded.getAttribute(REGION));
+		assertNull(sharded.with(REGION, null).getAttribute(REGION));
+		assertEquals(TenantContext.of("tenant1").with(SHARD, 3).with(REGION, "eu"), sharded);
+		assertNotEquals(context, sharded);
+		assertSame(TenantId.of("tenant1"), sharded.getTenantId());
+	}
+
+	@Test
+	public void whenSetOnTheContextHolderThenTheAttributesShouldBeAvailable() {
+		TenantContext context = TenantContext.of("tenant1").with(SHARD, 3);
+		ContextHolder.setTenantContext(context);
+		assertEquals("tenant1", ContextHolder.getContext());
+		assertSame(context, ContextHolder.getTenantContext());
+		ContextHolder.setContext("tenant2");
+		assertNull(ContextHolder.getTenantContext().getAttribute(SHARD));
+	}
+
+	@Test
+	public void whenAScopeIsClosedThenThePreviousAttributesShouldBeRestored() {
+		TenantContext context = TenantContext.of("tenant1").with(SHARD, 3);
+		ContextHolder.setTenantContext(context);
+		try (ContextScope scope = ContextHolder.withContext("tenant2")) {
+			assertNull(ContextHolder.getTenantContext().getAttribute(SHARD));
+		}
+		assertSame(context, ContextHolder.getTenantContext());
+	}
+
+	@Test
+	public void whenSnapshotIsAppliedThenTheAttributesShouldBeAvailable() throws Exception {
+		ContextHolder.setTenantContext(TenantContext.of("tenant1").with(REGION, "eu"));
+		ContextSnapshot snapshot = ContextSnapshot.capture();
+		ContextHolder.clear();
+		snapshot.run(new Runnable() {
+			public void run() {
+				assertEquals("eu", ContextHolder.getTenantContext().getAttribute(REGION));
+			}
+		});
+		assertNull(ContextHolder.getTenantContext());
+	}
+}
@@ -0,0 +1,79 @@
+package biz.deinum.multitenant.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the TenantId.
+ */
+public class TenantIdTest {
+
+	@After
+	public void after() {
+		ContextHolder.clear();
+	}
+
+	@Test
+	public void whenTheSameValueIsUsedThenTheSameInstanceShouldBeReturned() {
+		TenantId tenantId = TenantId.of("tenant-id-1");
+		assertSame(tenantId, TenantId.of(new String("tenant-id-1")));
+		assertNotSame(tenantId, TenantId.of("tenant-id-2"));
+		assertEquals("tenant-id-1".hashCode(), tenantId.hashCode());
+		assertNull(TenantId.of(null));
+	}
+
+	@Test
+	public void whenInternedThenIndexesShouldBeDense() {
+		TenantId tenantId = TenantId.of("tenant-id-dense");
+		assertTrue(tenantId.getIndex() >= 0);
+		assertTrue(tenantId.getIndex() < TenantId.count());
+	}
+
+	@Test
+	public void whenBlankThenItShouldBeReported() {
+		assertTrue(TenantId.of(" ").isBlank());
+		assertFalse(TenantId.of("tenant-id-1").isBlank());
+	}
+
+	@Test
+	public void whenLookedUpThenUnknownValuesShouldNotBeInterned() {
+		int count = TenantId.count();
+		assertNull(TenantId.find("tenant-id-unknown"));
+		ContextHolder.setContext("tenant-id-unknown");
+		assertNull(ContextHolder.getTenantId());
+		assertEquals(count, TenantId.count());
+		TenantId tenantId = TenantId.of("tenant-id-1");
+		assertSame(tenantId, TenantId.find("tenant-id-1"));
+	}
+
+	@Test
+	public void whenSetOnTheContextHolderThenItShouldBeReturned() {
+		TenantId tenantId = TenantId.of("tenant-id-1");
+		ContextHolder.setTenantId(tenantId);
+		assertEquals("tenant-id-1", ContextHolder.getContext());
+		assertSame(tenantId, ContextHolder.getTenantId());
+	}
+
+	@Test
+	public void whenDeserializedThenTheInternedInstanceShouldBeReturned() throws Exception {
+		TenantId tenantId = TenantId.of("tenant-id-1");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(tenantId);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertSame(tenantId, in.readObject());
+	}
+}
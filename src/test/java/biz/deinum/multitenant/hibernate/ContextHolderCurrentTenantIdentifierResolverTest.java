@@ -0,0 +1,39 @@
+package biz.deinum.multitenant.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+import biz.deinum.multitenant.aop.target.TargetLookupFailureException;
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * Tests for the ContextHolderCurrentTenantIdentifierResolver.
+ */
+public class ContextHolderCurrentTenantIdentifierResolverTest {
+
+	private ContextHolderCurrentTenantIdentifierResolver resolver = new ContextHolderCurrentTenantIdentifierResolver();
+
+	@After
+	public void after() {
+		ContextHolder.clear();
+	}
+
+	@Test
+	public void whenContextSetThenItShouldBeTheTenantIdentifier() {
+		ContextHolder.setContext("tenant1");
+		assertEquals("tenant1", resolver.resolveCurrentTenantIdentifier());
+	}
+
+	@Test
+	public void whenNoContextSetThenTheDefaultShouldBeUsed() {
+		resolver.setDefaultTenantIdentifier("default");
+		assertEquals("default", resolver.resolveCurrentTenantIdentifier());
+	}
+
+	@Test(expected = TargetLookupFailureException.class)
+	public void whenNoContextAndNoDefaultThenAnExceptionShouldBeThrown() {
+		resolver.resolveCurrentTenantIdentifier();
+	}
+}
@@ -0,0 +1,59 @@
+package biz.deinum.multitenant.hibernate;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.deinum.multitenant.aop.target.TargetLookupFailureException;
+import biz.deinum.multitenant.aop.target.registry.impl.MapTargetRegistry;
+
+/**
+ * Tests for the TargetRegistryMultiTenantConnectionProvider.
+ */
+public class TargetRegistryMultiTenantConnectionProviderTest {
+
+	private DataSource defaultDataSource = mock(DataSource.class);
+	private DataSource tenantDataSource = mock(DataSource.class);
+	private Connection defaultConnection = mock(Connection.class);
+	private Connection tenantConnection = mock(Connection.class);
+
+	private TargetRegistryMultiTenantConnectionProvider provider;
+
+	@Before
+	public void before() throws Exception {
+		when(defaultDataSource.getConnection()).thenReturn(defaultConnection);
+		when(tenantDataSource.getConnection()).thenReturn(tenantConnection);
+		Map<String, DataSource> targets = new HashMap<String, DataSource>();
+		targets.put("tenant1", tenantDataSource);
+		MapTargetRegistry<DataSource> registry = new MapTargetRegistry<DataSource>();
+		registry.setTargets(targets);
+		provider = new TargetRegistryMultiTenantConnectionProvider(registry,
+				defaultDataSource);
+	}
+
+	@Test
+	public void whenTenantKnownThenItsDataSourceShouldBeUsed() throws Exception {
+		assertSame(tenantConnection, provider.getConnection("tenant1"));
+	}
+
+	@Test
+	public void whenNoTenantThenDefaultDataSourceShouldBeUsed()
+			throws Exception {
+		assertSame(defaultConnection, provider.getAnyConnection());
+	}
+
+	@Test(expected = TargetLookupFailureException.class)
+	public void whenTenantUnknownThenAnExceptionShouldBeThrown()
+			throws Exception {
+		provider.getConnection("unknown");
+	}
+}
@@ -0,0 +1,139 @@
+package biz.deinum.multitenant.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * Tests for the SchemaSwitchingDataSource against an embedded H2 database.
+ */
+public class SchemaSwitchingDataSourceTest {
+
+	private SingleConnectionDataSource shared;
+	private SchemaSwitchingDataSource dataSource;
+
+	@Before
+	public void before() {
+		// A single physical connection, shared by all tenants
+		shared = new SingleConnectionDataSource(
+				"jdbc:h2:mem:schemas;DB_CLOSE_DELAY=-1", "sa", "", true);
+		JdbcTemplate setup = new JdbcTemplate(shared);
+		for (String tenant : new String[] { "tenant1", "tenant2" }) {
+			setup.execute("CREATE SCHEMA IF NOT EXISTS " + tenant);
+			setup.execute("CREATE TABLE IF NOT EXISTS " + tenant + ".item (name VARCHAR(50))");
+			setup.execute("DELETE FROM " + tenant + ".item");
+			setup.execute("INSERT INTO " + tenant + ".item VALUES ('" + tenant + "')");
+		}
+		dataSource = new SchemaSwitchingDataSource(shared, "PUBLIC");
+	}
+
+	@After
+	public void after() {
+		ContextHolder.clear();
+		shared.destroy();
+	}
+
+	@Test
+	public void whenContextSetThenTheTenantSchemaShouldBeUsed() {
+		JdbcTemplate template = new JdbcTemplate(dataSource);
+		ContextHolder.setContext("tenant1");
+		assertEquals("tenant1", template.queryForObject("SELECT name FROM item", String.class));
+		ContextHolder.setContext("tenant2");
+		assertEquals("tenant2", template.queryForObject("SELECT name FROM item", String.class));
+	}
+
+	@Test
+	public void whenConnectionClosedThenTheSchemaShouldBeReset() throws Exception {
+		ContextHolder.setContext("tenant1");
+		Connection connection = dataSource.getConnection();
+		assertEquals("TENANT1", currentSchema(connection));
+		connection.close();
+		assertEquals("PUBLIC", currentSchema(shared.getConnection()));
+	}
+
+	@Test
+	public void whenNoContextThenTheDefaultSchemaShouldBeUsed() throws Exception {
+		Connection connection = dataSource.getConnection();
+		assertEquals("PUBLIC", currentSchema(connection));
+	}
+
+	@Test(expected = SQLException.class)
+	public void whenContextIsNoValidSchemaThenAnExceptionShouldBeThrown() throws Exception {
+		ContextHolder.setContext("tenant1; DROP SCHEMA tenant2");
+		dataSource.getConnection();
+	}
+
+	@Test
+	public void whenResetFailsThenTheConnectionShouldBeAborted() throws Exception {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.execute("SET SCHEMA PUBLIC")).thenThrow(new SQLException("reset failed"));
+		SchemaSwitchingDataSource failing = new SchemaSwitchingDataSource(dataSource(connection), "PUBLIC");
+
+		ContextHolder.setContext("tenant1");
+		closeExpectingFailure(failing.getConnection());
+		verify(connection).abort(any(Executor.class));
+		verify(connection, never()).close();
+	}
+
+	@Test
+	public void whenResetAndAbortFailThenEveryBorrowShouldSwitch() throws Exception {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.execute("SET SCHEMA PUBLIC")).thenThrow(new SQLException("reset failed")).thenReturn(false);
+		doThrow(new SQLFeatureNotSupportedException()).when(connection).abort(any(Executor.class));
+		SchemaSwitchingDataSource failing = new SchemaSwitchingDataSource(dataSource(connection), "PUBLIC");
+
+		ContextHolder.setContext("tenant1");
+		closeExpectingFailure(failing.getConnection());
+		verify(connection).close();
+
+		ContextHolder.clear();
+		failing.getConnection();
+		verify(statement, times(2)).execute("SET SCHEMA PUBLIC");
+	}
+
+	private DataSource dataSource(Connection connection) throws SQLException {
+		DataSource target = mock(DataSource.class);
+		when(target.getConnection()).thenReturn(connection);
+		return target;
+	}
+
+	private void closeExpectingFailure(Connection connection) {
+		try {
+			connection.close();
+			fail("Expected SQLException");
+		} catch (SQLException ex) {
+			// expected
+		}
+	}
+
+	private String currentSchema(Connection connection) {
+		return new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+				.queryForObject("SELECT SCHEMA()", String.class);
+	}
+}
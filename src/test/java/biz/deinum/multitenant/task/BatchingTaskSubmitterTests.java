@@ -0,0 +1,174 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class BatchingTaskSubmitterTests {
+
+	private final CountingInterceptor interceptor = new CountingInterceptor();
+	private ThreadPoolTaskScheduler scheduler;
+	
+	@Before
+	public void setUp() {
+		this.scheduler = new ThreadPoolTaskScheduler();
+		this.scheduler.initialize();
+	}
+	
+	@After
+	public void tearDown() {
+		this.scheduler.shutdown();
+		ContextHolder.clear();
+	}
+	
+	@Test
+	public void testInterceptorsRunOncePerBatch() throws Exception {
+		BatchingTaskSubmitter submitter = new BatchingTaskSubmitter(new TaskExecutorAdapter(new SyncTaskExecutor()), null,
+				Collections.<TaskInterceptor>singletonList(this.interceptor));
+		submitter.setBatchSize(5);
+		ContextHolder.setContext("tenant1");
+		List<ListenableTaskFuture<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(submitter.submit(new CurrentContext()));
+		}
+		Assert.assertEquals(2, this.interceptor.before.get());
+		Assert.assertEquals(2, this.interceptor.after.get());
+		for (ListenableTaskFuture<String> future : futures) {
+			Assert.assertEquals("tenant1", future.get(1, TimeUnit.SECONDS));
+		}
+	}
+	
+	@Test
+	public void testTasksAreGroupedByTenant() throws Exception {
+		BatchingTaskSubmitter submitter = new BatchingTaskSubmitter(new TaskExecutorAdapter(new SyncTaskExecutor()), null,
+				Collections.<TaskInterceptor>singletonList(this.interceptor));
+		ContextHolder.setContext("tenant1");
+		ListenableTaskFuture<String> first = submitter.submit(new CurrentContext());
+		ContextHolder.setContext("tenant2");
+		ListenableTaskFuture<String> second = submitter.submit(new CurrentContext());
+		Assert.assertFalse(first.isDone());
+		submitter.flush();
+		Assert.assertEquals("tenant1", first.get(1, TimeUnit.SECONDS));
+		Assert.assertEquals("tenant2", second.get(1, TimeUnit.SECONDS));
+		Assert.assertEquals(2, this.interceptor.before.get());
+	}
+	
+	@Test
+	public void testLingeringBatchIsDispatched() throws Exception {
+		BatchingTaskSubmitter submitter = new BatchingTaskSubmitter(new TaskExecutorAdapter(new SyncTaskExecutor()), this.scheduler,
+				Collections.<TaskInterceptor>singletonList(this.interceptor));
+		submitter.setLingerTime(20);
+		ContextHolder.setContext("tenant1");
+		ListenableTaskFuture<String> future = submitter.submit(new CurrentContext());
+		Assert.assertEquals("tenant1", future.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testFailingTaskDoesNotAffectBatch() throws Exception {
+		BatchingTaskSubmitter submitter = new BatchingTaskSubmitter(new TaskExecutorAdapter(new SyncTaskExecutor()), null, null);
+		submitter.setBatchSize(2);
+		ListenableTaskFuture<String> failing = submitter.submit(new Callable<String>() {
+			@Override
+			public String call() {
+				throw new IllegalStateException("failed");
+			}
+		});
+		ListenableTaskFuture<String> ok = submitter.submit(new Callable<String>() {
+			@Override
+			public String call() {
+				return "ok";
+			}
+		});
+		Assert.assertEquals("ok", ok.get(1, TimeUnit.SECONDS));
+		try {
+			failing.get(1, TimeUnit.SECONDS);
+			Assert.fail("Expected ExecutionException");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+	
+	@Test
+	public void testFailingInterceptorUnwindsTheTenantContext() throws Exception {
+		BatchingTaskSubmitter submitter = new BatchingTaskSubmitter(new TaskExecutorAdapter(new SyncTaskExecutor()), null,
+				Collections.<TaskInterceptor>singletonList(new TaskInterceptor() {
+					@Override
+					public void beforeExecution() {
+						throw new IllegalStateException("failed");
+					}
+
+					@Override
+					public void afterExecution() {
+					}
+				}));
+		ContextHolder.setContext("tenant1");
+		ListenableTaskFuture<String> future = submitter.submit(new CurrentContext());
+		ContextHolder.clear();
+		submitter.flush();
+		Assert.assertNull(ContextHolder.getContext());
+		try {
+			future.get(1, TimeUnit.SECONDS);
+			Assert.fail("Expected ExecutionException");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+	
+	@Test
+	public void testRejectedLingeringBatchFailsItsTasks() throws Exception {
+		BatchingTaskSubmitter submitter = new BatchingTaskSubmitter(new TaskExecutorAdapter(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException("full");
+			}
+		}), this.scheduler, null);
+		submitter.setLingerTime(20);
+		ListenableTaskFuture<String> future = submitter.submit(new CurrentContext());
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail("Expected ExecutionException");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+		}
+	}
+	
+	private static class CurrentContext implements Callable<String> {
+		
+		@Override
+		public String call() {
+			return ContextHolder.getContext();
+		}
+	}
+	
+	private static class CountingInterceptor implements TaskInterceptor {
+		
+		private final AtomicInteger before = new AtomicInteger();
+		private final AtomicInteger after = new AtomicInteger();
+
+		@Override
+		public void beforeExecution() {
+			this.before.incrementAndGet();
+		}
+
+		@Override
+		public void afterExecution() {
+			this.after.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package biz.deinum.multitenant.task;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.orm.hibernate4.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class Hibernate4OpenSessionTaskInterceptorTests {
+
+	private SessionFactory sessionFactory;
+	private Session session;
+	private Hibernate4OpenSessionTaskInterceptor interceptor;
+	
+	@Before
+	public void setUp() {
+		this.sessionFactory = mock(SessionFactory.class);
+		this.session = mock(Session.class);
+		when(this.sessionFactory.openSession()).thenReturn(this.session);
+		when(this.session.isOpen()).thenReturn(true);
+		this.interceptor = new Hibernate4OpenSessionTaskInterceptor(this.sessionFactory);
+	}
+	
+	@After
+	public void tearDown() {
+		ContextHolder.clear();
+		this.interceptor.releaseSession();
+		if (TransactionSynchronizationManager.hasResource(this.sessionFactory)) {
+			TransactionSynchronizationManager.unbindResource(this.sessionFactory);
+		}
+	}
+	
+	@Test
+	public void testSessionPerTaskByDefault() throws Exception {
+		runTask();
+		runTask();
+		verify(this.sessionFactory, times(2)).openSession();
+		verify(this.session, times(2)).close();
+		Assert.assertFalse(TransactionSynchronizationManager.hasResource(this.sessionFactory));
+	}
+	
+	@Test
+	public void testSessionReusedForSameTenant() throws Exception {
+		this.interceptor.setMaxReuseCount(3);
+		ContextHolder.setContext("tenant1");
+		runTask();
+		runTask();
+		verify(this.sessionFactory, times(1)).openSession();
+		verify(this.session, times(2)).clear();
+		verify(this.session, never()).close();
+		runTask();
+		// Third use reaches the maximum
+		verify(this.session, times(1)).close();
+		runTask();
+		verify(this.sessionFactory, times(2)).openSession();
+	}
+	
+	@Test
+	public void testSessionNotReusedForOtherTenant() throws Exception {
+		this.interceptor.setMaxReuseCount(10);
+		ContextHolder.setContext("tenant1");
+		runTask();
+		ContextHolder.setContext("tenant2");
+		runTask();
+		verify(this.sessionFactory, times(2)).openSession();
+		verify(this.session, times(1)).close();
+	}
+	
+	@Test
+	public void testSessionNotReusedAfterFailedTask() throws Exception {
+		this.interceptor.setMaxReuseCount(10);
+		ContextHolder.setContext("tenant1");
+		this.interceptor.beforeExecution();
+		this.interceptor.onFailure(new IllegalStateException());
+		this.interceptor.afterExecution();
+		verify(this.session, times(1)).close();
+		runTask();
+		verify(this.sessionFactory, times(2)).openSession();
+	}
+	
+	@Test
+	public void testFailureIsReportedByTheChain() throws Exception {
+		this.interceptor.setMaxReuseCount(10);
+		ContextHolder.setContext("tenant1");
+		try {
+			new InterceptableCallable<Void>(new Callable<Void>() {
+				@Override
+				public Void call() {
+					throw new IllegalStateException("failed");
+				}
+			}, Collections.<TaskInterceptor> singletonList(this.interceptor)).call();
+			Assert.fail("Expected IllegalStateException");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		verify(this.session, times(1)).close();
+	}
+	
+	@Test
+	public void testDestroyClosesSessionsKeptOnOtherThreads() throws Exception {
+		this.interceptor.setMaxReuseCount(10);
+		Thread worker = new Thread() {
+			@Override
+			public void run() {
+				try {
+					runTask();
+				} catch (Exception ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+		};
+		worker.start();
+		worker.join();
+		verify(this.session, never()).close();
+		this.interceptor.destroy();
+		verify(this.session, times(1)).close();
+	}
+	
+	@Test
+	public void testJoinsAlreadyBoundSession() throws Exception {
+		Session bound = mock(Session.class);
+		TransactionSynchronizationManager.bindResource(this.sessionFactory, new SessionHolder(bound));
+		runTask();
+		verify(this.sessionFactory, never()).openSession();
+		verify(bound, never()).close();
+		SessionHolder holder = (SessionHolder) TransactionSynchronizationManager.getResource(this.sessionFactory);
+		Assert.assertSame(bound, holder.getSession());
+	}
+	
+	@Test
+	public void testNestedExecutionOnSameThread() throws Exception {
+		this.interceptor.beforeExecution();
+		runTask();
+		Assert.assertTrue(TransactionSynchronizationManager.hasResource(this.sessionFactory));
+		this.interceptor.afterExecution();
+		Assert.assertFalse(TransactionSynchronizationManager.hasResource(this.sessionFactory));
+		verify(this.sessionFactory, times(1)).openSession();
+	}
+	
+	private void runTask() throws Exception {
+		this.interceptor.beforeExecution();
+		Assert.assertTrue(TransactionSynchronizationManager.hasResource(this.sessionFactory));
+		this.interceptor.afterExecution();
+	}
+}
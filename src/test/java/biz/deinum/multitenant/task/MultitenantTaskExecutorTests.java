@@ -0,0 +1,227 @@
+package biz.deinum.multitenant.task;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.ContextLeakDetector;
+import biz.deinum.multitenant.core.TenantContext;
+
+public class MultitenantTaskExecutorTests {
+
+	private MultitenantTaskExecutor executor;
+	
+	@Before
+	public void setUp() {
+		this.executor = new MultitenantTaskExecutor(new SimpleAsyncTaskExecutor());
+		ContextHolder.setContext("tenant1");
+	}
+	
+	@After
+	public void tearDown() {
+		ContextHolder.clear();
+	}
+	
+	@Test
+	public void testCallbackRunsUnderSubmittingTenant() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicReference<String> callbackContext = new AtomicReference<>();
+		final AtomicReference<String> result = new AtomicReference<>();
+		ListenableTaskFuture<String> future = this.executor.submitListenable(new CurrentContext());
+		ContextHolder.setContext("tenant2");
+		future.addCallback(new TaskCallback<String>() {
+			@Override
+			public void onSuccess(String value) {
+				result.set(value);
+				callbackContext.set(ContextHolder.getContext());
+				latch.countDown();
+			}
+			
+			@Override
+			public void onFailure(Throwable ex) {
+				latch.countDown();
+			}
+		});
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("tenant1", result.get());
+		Assert.assertEquals("tenant1", callbackContext.get());
+		Assert.assertEquals("tenant2", ContextHolder.getContext());
+	}
+	
+	@Test
+	public void testTransformOnOtherExecutorRunsUnderSubmittingTenant() throws Exception {
+		ListenableTaskFuture<String> future = this.executor.submitListenable(new CurrentContext());
+		ListenableTaskFuture<String> dependent = future.transform(new TaskFunction<String, String>() {
+			@Override
+			public String apply(String input) {
+				return input + "/" + ContextHolder.getContext();
+			}
+		}, new SimpleAsyncTaskExecutor());
+		ContextHolder.clear();
+		Assert.assertEquals("tenant1/tenant1", dependent.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testTransformPropagatesFailure() throws Exception {
+		ListenableTaskFuture<String> future = this.executor.submitListenable(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw new IllegalStateException("failed");
+			}
+		});
+		ListenableTaskFuture<String> dependent = future.transform(new TaskFunction<String, String>() {
+			@Override
+			public String apply(String input) {
+				return input;
+			}
+		}, null);
+		try {
+			dependent.get(5, TimeUnit.SECONDS);
+			Assert.fail("Expected ExecutionException");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+	
+	@Test
+	public void testTransformFailsWhenTheExecutorRejectsTheStage() throws Exception {
+		ListenableTaskFuture<String> future = this.executor.submitListenable(new CurrentContext());
+		future.get(5, TimeUnit.SECONDS);
+		ListenableTaskFuture<String> dependent = future.transform(new TaskFunction<String, String>() {
+			@Override
+			public String apply(String input) {
+				return input;
+			}
+		}, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException("full");
+			}
+		});
+		try {
+			dependent.get(5, TimeUnit.SECONDS);
+			Assert.fail("Expected ExecutionException");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+		}
+	}
+	
+	@Test
+	public void testComposeCompletesWithTheReturnedFuture() throws Exception {
+		ListenableTaskFuture<String> future = this.executor.submitListenable(new CurrentContext());
+		ListenableTaskFuture<String> dependent = future.compose(
+				new TaskFunction<String, ListenableTaskFuture<String>>() {
+					@Override
+					public ListenableTaskFuture<String> apply(final String input) {
+						return MultitenantTaskExecutorTests.this.executor.submitListenable(new Callable<String>() {
+							@Override
+							public String call() {
+								return input + "/" + ContextHolder.getContext();
+							}
+						});
+					}
+				}, new SimpleAsyncTaskExecutor());
+		ContextHolder.clear();
+		Assert.assertEquals("tenant1/tenant1", dependent.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testComposePropagatesFailureOfTheReturnedFuture() throws Exception {
+		ListenableTaskFuture<String> future = this.executor.submitListenable(new CurrentContext());
+		ListenableTaskFuture<String> dependent = future.compose(
+				new TaskFunction<String, ListenableTaskFuture<String>>() {
+					@Override
+					public ListenableTaskFuture<String> apply(String input) {
+						return MultitenantTaskExecutorTests.this.executor.submitListenable(new Callable<String>() {
+							@Override
+							public String call() {
+								throw new IllegalStateException("failed");
+							}
+						});
+					}
+				}, null);
+		try {
+			dependent.get(5, TimeUnit.SECONDS);
+			Assert.fail("Expected ExecutionException");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+	
+	@Test
+	public void testTaskRunsWithTheAttributesOfTheSubmittingContext() throws Exception {
+		final ContextAttribute<String> region = ContextAttribute.of("region", String.class);
+		ContextHolder.setTenantContext(TenantContext.of("tenant1").with(region, "eu"));
+		Future<String> future = this.executor.submit(new Callable<String>() {
+			@Override
+			public String call() {
+				return ContextHolder.getTenantContext().getAttribute(region);
+			}
+		});
+		Assert.assertEquals("eu", future.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testLeakedContextIsRestoredWhenDetectionIsEnabled() throws Exception {
+		ContextLeakDetector.setLevel(ContextLeakDetector.Level.SIMPLE);
+		try {
+			long leaks = ContextLeakDetector.getLeakCount();
+			new InterceptableCallable<String>(new Callable<String>() {
+				@Override
+				public String call() {
+					ContextHolder.setContext("leaked");
+					return null;
+				}
+			}, new TaskInterceptorChain(null)).call();
+			Assert.assertEquals("tenant1", ContextHolder.getContext());
+			Assert.assertEquals(leaks + 1, ContextLeakDetector.getLeakCount());
+		} finally {
+			ContextLeakDetector.setLevel(ContextLeakDetector.Level.DISABLED);
+		}
+	}
+	
+	@Test
+	public void testAppliedInterceptorsAreUnwoundWhenALaterInterceptorFails() throws Exception {
+		final TaskInterceptor failing = new TaskInterceptor() {
+			@Override
+			public void beforeExecution() throws Exception {
+				throw new IllegalStateException("failed");
+			}
+			
+			@Override
+			public void afterExecution() {
+				Assert.fail("Interceptor which failed must not be unwound");
+			}
+		};
+		try {
+			new InterceptableCallable<String>(new CurrentContext(), Arrays.asList(
+					new MultitenantContextTaskInterceptor("tenant2"), failing)).call();
+			Assert.fail("Expected IllegalStateException");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		Assert.assertEquals("tenant1", ContextHolder.getContext());
+	}
+	
+	private static class CurrentContext implements Callable<String> {
+		
+		@Override
+		public String call() {
+			return ContextHolder.getContext();
+		}
+	}
+}
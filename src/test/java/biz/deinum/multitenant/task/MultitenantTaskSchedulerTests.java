@@ -0,0 +1,121 @@
+package biz.deinum.multitenant.task;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class MultitenantTaskSchedulerTests {
+
+	private ThreadPoolTaskScheduler delegate;
+	
+	@Before
+	public void setUp() {
+		this.delegate = new ThreadPoolTaskScheduler();
+		this.delegate.setPoolSize(2);
+		this.delegate.initialize();
+	}
+	
+	@After
+	public void tearDown() {
+		this.delegate.shutdown();
+		ContextHolder.clear();
+	}
+	
+	@Test
+	public void testScheduleCapturesCallingTenant() throws Exception {
+		MultitenantTaskScheduler scheduler = new MultitenantTaskScheduler(this.delegate);
+		final AtomicReference<String> context = new AtomicReference<>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		ContextHolder.setContext("tenant1");
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				context.set(ContextHolder.getContext());
+				latch.countDown();
+			}
+		}, new Date());
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("tenant1", context.get());
+	}
+	
+	@Test
+	public void testFixedContextIsAssigned() throws Exception {
+		MultitenantTaskScheduler scheduler = new MultitenantTaskScheduler(this.delegate, "fixed");
+		final AtomicReference<String> context = new AtomicReference<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		ContextHolder.setContext("tenant1");
+		ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				context.set(ContextHolder.getContext());
+				latch.countDown();
+			}
+		}, 10);
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		future.cancel(true);
+		Assert.assertEquals("fixed", context.get());
+	}
+	
+	@Test
+	public void testPerTenantScheduleRunsEveryTenant() throws Exception {
+		MultitenantTaskScheduler scheduler = new MultitenantTaskScheduler(this.delegate);
+		final Map<String, String> seen = new ConcurrentHashMap<>();
+		final CountDownLatch latch = new CountDownLatch(3);
+		Map<String, ScheduledFuture<?>> futures = scheduler.schedulePerTenantAtFixedRate(Arrays.asList("t1", "t2", "t3"), new Runnable() {
+			@Override
+			public void run() {
+				String context = ContextHolder.getContext();
+				if (seen.put(context, context) == null) {
+					latch.countDown();
+				}
+			}
+		}, 90);
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		for (ScheduledFuture<?> future : futures.values()) {
+			future.cancel(true);
+		}
+		Assert.assertEquals(3, seen.size());
+	}
+	
+	@Test
+	public void testOffsetsAreSpreadAcrossPeriod() {
+		MultitenantTaskScheduler scheduler = new MultitenantTaskScheduler(this.delegate);
+		Assert.assertEquals(0, scheduler.offset(0, 4, 1000));
+		Assert.assertEquals(500, scheduler.offset(2, 4, 1000));
+		scheduler.setJitter(100);
+		long offset = scheduler.offset(3, 4, 1000);
+		Assert.assertTrue(offset >= 750 && offset < 850);
+	}
+	
+	@Test
+	public void testOffsetTriggerShiftsExecutionTime() {
+		Trigger everySecond = new Trigger() {
+			@Override
+			public Date nextExecutionTime(TriggerContext triggerContext) {
+				Date last = triggerContext.lastCompletionTime();
+				return new Date((last != null ? last.getTime() : 0) + 1000);
+			}
+		};
+		Trigger shifted = new MultitenantTaskScheduler.OffsetTrigger(everySecond, 300);
+		Assert.assertEquals(1300, shifted.nextExecutionTime(new SimpleTriggerContext()).getTime());
+		SimpleTriggerContext context = new SimpleTriggerContext();
+		context.update(new Date(1300), new Date(1300), new Date(1300));
+		Assert.assertEquals(2300, shifted.nextExecutionTime(context).getTime());
+	}
+}
@@ -0,0 +1,148 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+public class TenantFanOutExecutorTests {
+
+	private ThreadPoolTaskExecutor delegate;
+	
+	@Before
+	public void setUp() {
+		this.delegate = new ThreadPoolTaskExecutor();
+		this.delegate.setCorePoolSize(4);
+		this.delegate.initialize();
+	}
+	
+	@After
+	public void tearDown() {
+		this.delegate.shutdown();
+		ContextHolder.clear();
+	}
+	
+	@Test
+	public void testTaskRunsUnderEachTenant() throws Exception {
+		TenantFanOutExecutor executor = new TenantFanOutExecutor(this.delegate, 2);
+		List<String> tenants = Arrays.asList("tenant1", "tenant2", "tenant3", "tenant4", "tenant5");
+		FanOutResult<String> result = executor.execute(tenants, new Callable<String>() {
+			@Override
+			public String call() {
+				return ContextHolder.getContext();
+			}
+		});
+		Assert.assertTrue(result.isSuccessful());
+		Assert.assertEquals(5, result.getResults().size());
+		for (String tenant : tenants) {
+			Assert.assertEquals(tenant, result.getResults().get(tenant));
+		}
+	}
+	
+	@Test
+	public void testConcurrencyIsBounded() throws Exception {
+		TenantFanOutExecutor executor = new TenantFanOutExecutor(this.delegate, 2);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		executor.execute(Arrays.asList("t1", "t2", "t3", "t4", "t5", "t6"), new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				int current = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				Thread.sleep(20);
+				running.decrementAndGet();
+				return null;
+			}
+		});
+		Assert.assertTrue(maxRunning.get() <= 2);
+	}
+	
+	@Test
+	public void testFailuresAndTimeoutsAreIsolated() throws Exception {
+		TenantFanOutExecutor executor = new TenantFanOutExecutor(this.delegate, 4);
+		executor.setTimeout(200);
+		final List<String> progress = new ArrayList<>();
+		FanOutResult<String> result = executor.execute(Arrays.asList("ok", "fail", "slow"), new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				String tenant = ContextHolder.getContext();
+				if ("fail".equals(tenant)) {
+					throw new IllegalStateException("failed");
+				}
+				if ("slow".equals(tenant)) {
+					Thread.sleep(10000);
+				}
+				return tenant;
+			}
+		}, new FanOutListener<String>() {
+			@Override
+			public void onSuccess(String tenant, String value, int completed, int total) {
+				progress.add(tenant + " " + completed + "/" + total);
+			}
+
+			@Override
+			public void onFailure(String tenant, Throwable ex, int completed, int total) {
+				progress.add(tenant + " " + completed + "/" + total);
+			}
+		});
+		Assert.assertFalse(result.isSuccessful());
+		Assert.assertEquals("ok", result.getResults().get("ok"));
+		Assert.assertTrue(result.getFailures().get("fail") instanceof IllegalStateException);
+		Assert.assertTrue(result.getFailures().get("slow") instanceof TimeoutException);
+		Assert.assertEquals(3, progress.size());
+		Assert.assertTrue(progress.get(2).endsWith("3/3"));
+	}
+	
+	@Test
+	public void testRejectedTenantIsRecordedAsFailure() throws Exception {
+		final AtomicInteger submissions = new AtomicInteger();
+		SimpleAsyncTaskExecutor rejecting = new SimpleAsyncTaskExecutor() {
+			@Override
+			public <T> Future<T> submit(Callable<T> task) {
+				if (submissions.incrementAndGet() == 2) {
+					throw new TaskRejectedException("full");
+				}
+				return super.submit(task);
+			}
+		};
+		TenantFanOutExecutor executor = new TenantFanOutExecutor(rejecting, 1);
+		FanOutResult<String> result = executor.execute(Arrays.asList("t1", "t2", "t3"), new Callable<String>() {
+			@Override
+			public String call() {
+				return ContextHolder.getContext();
+			}
+		});
+		Assert.assertEquals(2, result.getResults().size());
+		Assert.assertTrue(result.getFailures().get("t2") instanceof TaskRejectedException);
+	}
+	
+	@Test
+	public void testTimeoutExcludesTimeSpentInTheQueue() throws Exception {
+		this.delegate.setCorePoolSize(1);
+		TenantFanOutExecutor executor = new TenantFanOutExecutor(this.delegate, 2);
+		executor.setTimeout(400);
+		FanOutResult<String> result = executor.execute(Arrays.asList("t1", "t2"), new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				Thread.sleep(250);
+				return ContextHolder.getContext();
+			}
+		});
+		Assert.assertTrue(result.getFailures().toString(), result.isSuccessful());
+	}
+}
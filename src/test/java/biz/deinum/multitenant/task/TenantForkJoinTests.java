@@ -0,0 +1,147 @@
+package biz.deinum.multitenant.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+
+public class TenantForkJoinTests {
+
+	private ForkJoinPool pool;
+	
+	@Before
+	public void setUp() {
+		this.pool = new ForkJoinPool(2);
+	}
+	
+	@After
+	public void tearDown() {
+		this.pool.shutdownNow();
+		ContextHolder.clear();
+	}
+	
+	@Test
+	public void testInvokeRunsUnderCallingTenant() {
+		ContextHolder.setContext("tenant1");
+		Assert.assertEquals("tenant1", TenantForkJoin.invoke(this.pool, new CurrentContext()));
+	}
+	
+	@Test
+	public void testAttributesOfTheTenantContextAreCarried() {
+		final ContextAttribute<String> region = ContextAttribute.of("region", String.class);
+		ContextHolder.setTenantContext(TenantContext.of("tenant1").with(region, "eu"));
+		List<Callable<String>> tasks = new ArrayList<>();
+		tasks.add(new Callable<String>() {
+			@Override
+			public String call() {
+				return ContextHolder.getTenantContext().getAttribute(region);
+			}
+		});
+		Assert.assertEquals("eu", TenantForkJoin.invokeAll(this.pool, tasks).get(0));
+	}
+	
+	@Test
+	public void testRecursiveSubtasksInheritTenant() {
+		ContextHolder.setContext("tenant1");
+		Assert.assertEquals(Integer.valueOf(0), this.pool.invoke(new CountMismatches(0, 1024)));
+	}
+	
+	@Test
+	public void testNoContextBleedsBetweenTenantsSharingWorkers() throws Exception {
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		List<Future<Integer>> mismatches = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			final String tenant = "tenant" + i;
+			mismatches.add(callers.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					ContextHolder.setContext(tenant);
+					try {
+						int result = pool.invoke(new CountMismatches(0, 2048));
+						List<Callable<String>> tasks = new ArrayList<>();
+						for (int j = 0; j < 100; j++) {
+							tasks.add(new CurrentContext());
+						}
+						for (String context : TenantForkJoin.invokeAll(pool, tasks)) {
+							if (!tenant.equals(context)) {
+								result++;
+							}
+						}
+						return result;
+					} finally {
+						ContextHolder.clear();
+					}
+				}
+			}));
+		}
+		for (Future<Integer> result : mismatches) {
+			Assert.assertEquals(Integer.valueOf(0), result.get(30, TimeUnit.SECONDS));
+		}
+		callers.shutdown();
+		// Plain tasks on the same workers must not see any leftover tenant
+		for (int i = 0; i < 10; i++) {
+			Assert.assertNull(this.pool.invoke(new RecursiveTask<String>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected String compute() {
+					return ContextHolder.getContext();
+				}
+			}));
+		}
+	}
+	
+	private static class CurrentContext implements Callable<String> {
+		
+		@Override
+		public String call() {
+			return ContextHolder.getContext();
+		}
+	}
+	
+	private static class CountMismatches extends TenantRecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		
+		CountMismatches(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Integer computeInContext() {
+			if (this.to - this.from <= 16) {
+				int mismatches = 0;
+				for (int i = this.from; i < this.to; i++) {
+					if (!getTenantContext().equals(ContextHolder.getContext())) {
+						mismatches++;
+					}
+				}
+				return mismatches;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			CountMismatches left = new CountMismatches(this.from, middle);
+			CountMismatches right = new CountMismatches(middle, this.to);
+			left.fork();
+			int result = right.compute();
+			return result + left.join();
+		}
+	}
+}
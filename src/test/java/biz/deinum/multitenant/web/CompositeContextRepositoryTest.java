@@ -0,0 +1,105 @@
+package biz.deinum.multitenant.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.ContextHolder;
+import biz.deinum.multitenant.core.TenantContext;
+import biz.deinum.multitenant.web.filter.ContextFilter;
+import biz.deinum.multitenant.web.servlet.ContextInterceptor;
+
+/**
+ * Tests for the CompositeContextRepository.
+ */
+public class CompositeContextRepositoryTest {
+
+	private ContextRepository first = mock(ContextRepository.class);
+	private ContextRepository second = mock(ContextRepository.class);
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	private CompositeContextRepository repository;
+
+	@Before
+	public void before() {
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+		repository = new CompositeContextRepository(first, second);
+	}
+
+	@Test
+	public void whenFirstRepositoryResolvesThenOthersShouldNotBeAsked() {
+		when(first.getContext(request, response)).thenReturn("test");
+		assertEquals("test", repository.getContext(request, response));
+		verify(second, never()).getContext(request, response);
+	}
+
+	@Test
+	public void whenFirstRepositoryFailsThenNextShouldBeAsked() {
+		when(second.getContext(request, response)).thenReturn("test");
+		assertEquals("test", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenNoRepositoryResolvesThenDefaultValueShouldBeReturned() {
+		repository.setDefaultContext("default-test-value");
+		assertEquals("default-test-value", repository.getContext(request, response));
+		assertEquals("default-test-value", repository.getContext(request, response));
+		verify(first, times(1)).getContext(request, response);
+	}
+
+	@Test
+	public void whenDelegateResolvesAttributesThenTheyShouldBeKept() {
+		ContextAttribute<String> region = ContextAttribute.of("region", String.class);
+		TenantContextRepository attributes = mock(TenantContextRepository.class);
+		when(attributes.getTenantContext(request, response)).thenReturn(
+				TenantContext.of("test").with(region, "eu"));
+		repository = new CompositeContextRepository(first, attributes);
+		TenantContext context = repository.getTenantContext(request, response);
+		assertEquals("test", context.getTenant());
+		assertEquals("eu", context.getAttribute(region));
+		assertEquals("test", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenFilterAndInterceptorConfiguredThenContextShouldBeResolvedOnce()
+			throws Exception {
+		when(first.getContext(request, response)).thenReturn("test");
+		ContextFilter filter = new ContextFilter(repository);
+		final ContextInterceptor interceptor = new ContextInterceptor(repository);
+		filter.doFilter(request, response, new FilterChain() {
+
+			@Override
+			public void doFilter(ServletRequest req, ServletResponse res)
+					throws IOException, ServletException {
+				try {
+					interceptor.preHandle((HttpServletRequest) req, (HttpServletResponse) res, null);
+					assertEquals("test", ContextHolder.getContext());
+				} catch (Exception ex) {
+					throw new ServletException(ex);
+				}
+			}
+		});
+		verify(first, times(1)).getContext(request, response);
+	}
+}
@@ -0,0 +1,64 @@
+package biz.deinum.multitenant.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import biz.deinum.multitenant.core.ContextAttribute;
+import biz.deinum.multitenant.core.TenantContext;
+
+/**
+ * Tests for the HeaderContextRepository.
+ */
+public class HeaderContextRepositoryTest {
+
+	private HeaderContextRepository repository = new HeaderContextRepository("default-test-value");
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void before() {
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+	}
+
+	@Test
+	public void whenHeaderFoundThenValueShouldBeReturned() {
+		request.addHeader("X-Tenant-ID", " test ");
+		assertEquals("test", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenHeaderNotFoundThenDefaultValueShouldBeReturned() {
+		assertEquals("default-test-value", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenAttributeHeaderFoundThenTheConvertedValueShouldBeSet() {
+		ContextAttribute<Integer> shard = ContextAttribute.of("shard", Integer.class);
+		repository.setAttributeHeaders(Collections.<String, ContextAttribute<?>> singletonMap("X-Tenant-Shard", shard));
+		request.addHeader("X-Tenant-ID", "test");
+		request.addHeader("X-Tenant-Shard", "3");
+		TenantContext context = repository.getTenantContext(request, response);
+		assertEquals("test", context.getTenant());
+		assertEquals(Integer.valueOf(3), context.getAttribute(shard));
+	}
+
+	@Test
+	public void whenAttributeHeaderCannotBeConvertedThenTheAttributeShouldBeIgnored() {
+		ContextAttribute<Integer> shard = ContextAttribute.of("shard", Integer.class);
+		repository.setAttributeHeaders(Collections.<String, ContextAttribute<?>> singletonMap("X-Tenant-Shard", shard));
+		request.addHeader("X-Tenant-ID", "test");
+		request.addHeader("X-Tenant-Shard", "not-a-number");
+		TenantContext context = repository.getTenantContext(request, response);
+		assertEquals("test", context.getTenant());
+		assertNull(context.getAttribute(shard));
+	}
+}
@@ -0,0 +1,86 @@
+package biz.deinum.multitenant.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests for the HostContextRepository.
+ */
+public class HostContextRepositoryTest {
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void before() {
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+	}
+
+	@Test
+	public void whenSubdomainPresentThenItShouldBeReturned() {
+		HostContextRepository repository = new HostContextRepository(null);
+		request.setServerName("Acme.example.com");
+		assertEquals("acme", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenNoSubdomainThenDefaultValueShouldBeReturned() {
+		HostContextRepository repository = new HostContextRepository("default-test-value");
+		request.setServerName("example.com");
+		assertEquals("default-test-value", repository.getContext(request, response));
+		request.setServerName("localhost");
+		assertEquals("default-test-value", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenDomainSetThenOnlyDirectSubdomainsShouldMatch() {
+		HostContextRepository repository = new HostContextRepository("example.com", null);
+		request.setServerName("acme.example.com");
+		assertEquals("acme", repository.getContext(request, response));
+		request.setServerName("acme.other.com");
+		assertNull(repository.getContext(request, response));
+		request.setServerName("a.b.example.com");
+		assertNull(repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenCacheLimitReachedThenEntriesShouldBeEvicted() {
+		HostContextRepository repository = new HostContextRepository(null, null, 2);
+		for (String host : new String[] { "a.example.com", "b.example.com", "c.example.com" }) {
+			request.setServerName(host);
+			repository.getContext(request, response);
+		}
+		assertEquals(2, repository.getCacheSize());
+	}
+
+	@Test
+	public void whenRandomHostsFloodTheCacheThenEntriesInUseShouldBeKept() {
+		final AtomicInteger parsed = new AtomicInteger();
+		HostContextRepository repository = new HostContextRepository(null, null, 8) {
+			@Override
+			protected String parseContext(String raw) {
+				if (raw.startsWith("acme.")) {
+					parsed.incrementAndGet();
+				}
+				return super.parseContext(raw);
+			}
+		};
+		for (int i = 0; i < 100; i++) {
+			request.setServerName("acme.example.com");
+			assertEquals("acme", repository.getContext(request, response));
+			request.setServerName("random-" + i + ".example.com");
+			repository.getContext(request, response);
+		}
+		assertEquals(1, parsed.get());
+		assertTrue(repository.getCacheSize() <= 8);
+	}
+}
@@ -0,0 +1,55 @@
+package biz.deinum.multitenant.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests for the JwtClaimContextRepository.
+ */
+public class JwtClaimContextRepositoryTest {
+
+	/** {"alg":"none"} */
+	private static final String HEADER = "eyJhbGciOiJub25lIn0";
+
+	private JwtClaimContextRepository repository = new JwtClaimContextRepository("default-test-value");
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void before() {
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+	}
+
+	@Test
+	public void whenClaimPresentThenItShouldBeReturned() {
+		request.addHeader("Authorization", "Bearer " + HEADER
+				+ ".eyJzdWIiOiJqb2UiLCAibmVzdGVkIjp7InRlbmFudCI6Im90aGVyIn0sICJ0ZW5hbnQiIDogImFjbWUifQ.signature");
+		assertEquals("acme", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenClaimMissingThenDefaultValueShouldBeReturned() {
+		request.addHeader("Authorization", "Bearer " + HEADER + ".eyJzdWIiOiJqb2UifQ.signature");
+		assertEquals("default-test-value", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenTokenMalformedThenDefaultValueShouldBeReturned() {
+		request.addHeader("Authorization", "Bearer not-a-token");
+		assertEquals("default-test-value", repository.getContext(request, response));
+	}
+
+	@Test
+	public void claimValuesShouldBeUnescaped() {
+		assertEquals("a\"b", JwtClaimContextRepository.extractClaim("{\"tenant\":\"a\\\"b\"}", "tenant"));
+		assertEquals("42", JwtClaimContextRepository.extractClaim("{\"tenant\":42}", "tenant"));
+		assertNull(JwtClaimContextRepository.extractClaim("{\"tenant\":true}", "tenant"));
+	}
+}
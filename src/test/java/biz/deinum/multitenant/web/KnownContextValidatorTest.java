@@ -0,0 +1,34 @@
+package biz.deinum.multitenant.web;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for the KnownContextValidator.
+ */
+public class KnownContextValidatorTest {
+
+	private KnownContextValidator validator = new KnownContextValidator(Arrays.asList("tenant1"));
+
+	@Test
+	public void whenContextKnownThenItShouldBeValid() {
+		assertTrue(validator.isValid("tenant1"));
+	}
+
+	@Test
+	public void whenContextUnknownThenItShouldBeInvalid() {
+		assertFalse(validator.isValid("tenant2"));
+		assertFalse(validator.isValid(null));
+	}
+
+	@Test
+	public void whenContextsReplacedThenNewContextsShouldBeValid() {
+		validator.setContexts(Arrays.asList("tenant2"));
+		assertFalse(validator.isValid("tenant1"));
+		assertTrue(validator.isValid("tenant2"));
+	}
+}
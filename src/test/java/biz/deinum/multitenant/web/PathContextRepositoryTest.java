@@ -0,0 +1,41 @@
+package biz.deinum.multitenant.web;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests for the PathContextRepository.
+ */
+public class PathContextRepositoryTest {
+
+	private PathContextRepository repository = new PathContextRepository("default-test-value");
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void before() {
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+	}
+
+	@Test
+	public void whenFirstSegmentPresentThenItShouldBeReturned() {
+		request.setContextPath("/app");
+		request.setRequestURI("/app/acme/orders/1");
+		assertEquals("acme", repository.getContext(request, response));
+		request.setRequestURI("/app/acme;jsessionid=1");
+		assertEquals("acme", repository.getContext(request, response));
+	}
+
+	@Test
+	public void whenNoSegmentThenDefaultValueShouldBeReturned() {
+		request.setContextPath("/app");
+		request.setRequestURI("/app/");
+		assertEquals("default-test-value", repository.getContext(request, response));
+	}
+}
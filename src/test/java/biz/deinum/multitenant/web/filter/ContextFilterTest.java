@@ -2,9 +2,14 @@ package biz.deinum.multitenant.web.filter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -18,12 +23,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
 import biz.deinum.multitenant.core.ContextHolder;
 import biz.deinum.multitenant.web.ContextRepository;
+import biz.deinum.multitenant.web.KnownContextValidator;
 
 /**
  * Tests for the ContextInterceptor.
@@ -76,6 +86,56 @@ public class ContextFilterTest {
 		assertNull(ContextHolder.getContext());
 	}
 
+	@Test
+	public void whenContextUnknownThenRequestShouldBeRejected() throws Exception {
+		filter.setContextValidator(new KnownContextValidator(Arrays.asList("test")));
+		when(repository.getContext(request, response)).thenReturn("unknown");
+		FilterChain chain = mock(FilterChain.class);
+		filter.doFilter(request, response, chain);
+		assertEquals(404, ((MockHttpServletResponse) response).getStatus());
+		verify(chain, never()).doFilter(request, response);
+	}
+
+	@Test
+	public void whenContextKnownThenTheContextShouldBeSet() throws Exception {
+		filter.setContextValidator(new KnownContextValidator(Arrays.asList("test")));
+		when(repository.getContext(request, response)).thenReturn("test");
+		filter.doFilter(request, response, new VerifyFilterChain("test"));
+	}
+
+	@Test
+	public void whenCallableReturnedThenItShouldRunWithTheContext() throws Exception {
+		MockHttpServletRequest asyncRequest = new MockHttpServletRequest();
+		when(repository.getContext(asyncRequest, response)).thenReturn("test");
+		final WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(asyncRequest);
+		filter.doFilter(asyncRequest, response, new FilterChain() {
+
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response)
+					throws IOException, ServletException {
+				asyncManager.setAsyncWebRequest(mock(AsyncWebRequest.class));
+				asyncManager.setTaskExecutor(new SimpleAsyncTaskExecutor());
+				try {
+					asyncManager.startCallableProcessing(new Callable<String>() {
+
+						@Override
+						public String call() throws Exception {
+							return ContextHolder.getContext();
+						}
+					});
+				} catch (Exception ex) {
+					throw new ServletException(ex);
+				}
+			}
+		});
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!asyncManager.hasConcurrentResult() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals("test", asyncManager.getConcurrentResult());
+		assertNull(ContextHolder.getContext());
+	}
+
 	private static class VerifyFilterChain implements FilterChain {
 
 		private final String value;
@@ -0,0 +1,220 @@
+package biz.deinum.multitenant.web.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import biz.deinum.multitenant.core.ContextHolder;
+
+/**
+ * Tests for the ContextThrottlingFilter.
+ */
+public class ContextThrottlingFilterTest {
+
+	private ContextThrottlingFilter filter;
+
+	private ExecutorService executor;
+
+	@Before
+	public void before() {
+		filter = new ContextThrottlingFilter();
+		executor = Executors.newFixedThreadPool(10);
+	}
+
+	@After
+	public void after() {
+		executor.shutdownNow();
+		ContextHolder.clear();
+	}
+
+	@Test
+	public void whenRateExceededThenRequestShouldBeRejected() throws Exception {
+		filter.setRequestsPerSecond(1);
+		filter.setBurst(2);
+		assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+		assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+		MockHttpServletResponse rejected = request("tenant1", new MockFilterChain());
+		assertEquals(429, rejected.getStatus());
+		assertEquals("1", rejected.getHeader("Retry-After"));
+		// Other tenants have their own bucket
+		assertEquals(200, request("tenant2", new MockFilterChain()).getStatus());
+	}
+
+	@Test
+	public void whenOverrideConfiguredThenItShouldBeUsed() throws Exception {
+		filter.setRequestsPerSecond(1);
+		filter.setOverrides(Collections.singletonMap("tenant1",
+				new ContextThrottlingFilter.Limit(0, 1, 0)));
+		for (int i = 0; i < 10; i++) {
+			assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+		}
+	}
+
+	@Test
+	public void whenOneTenantSaturatedThenOtherTenantsShouldNotBeAffected()
+			throws Exception {
+		filter.setMaxConcurrentRequests(2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final FilterChain blocking = new FilterChain() {
+
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response)
+					throws IOException, ServletException {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		Future<?>[] saturating = new Future<?>[2];
+		for (int i = 0; i < saturating.length; i++) {
+			saturating[i] = executor.submit(new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					return request("tenant1", blocking).getStatus();
+				}
+			});
+		}
+		// Wait until both requests of tenant1 are in flight
+		long deadline = System.currentTimeMillis() + 5000;
+		while (request("tenant1", new MockFilterChain()).getStatus() != 429
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(429, request("tenant1", new MockFilterChain()).getStatus());
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			assertEquals(200, request("tenant2", new MockFilterChain()).getStatus());
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("tenant2 was slowed down: " + elapsed + " ms", elapsed < 1000);
+
+		release.countDown();
+		for (Future<?> future : saturating) {
+			assertEquals(200, future.get(5, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void whenConcurrencyExceededThenRateTokenShouldBeRefunded()
+			throws Exception {
+		filter.setRequestsPerSecond(0.1);
+		filter.setBurst(2);
+		filter.setMaxConcurrentRequests(1);
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<Integer> inFlight = executor.submit(new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				return request("tenant1", new FilterChain() {
+
+					@Override
+					public void doFilter(ServletRequest request,
+							ServletResponse response) {
+						entered.countDown();
+						try {
+							release.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}).getStatus();
+			}
+		});
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		assertEquals(429, request("tenant1", new MockFilterChain()).getStatus());
+		release.countDown();
+		assertEquals(200, (int) inFlight.get(5, TimeUnit.SECONDS));
+		// The rejected request did not use the second token of the burst
+		assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+	}
+
+	@Test
+	public void whenMaxContextsReachedThenNewContextsShouldShareAThrottle()
+			throws Exception {
+		filter.setRequestsPerSecond(0.1);
+		filter.setMaxContexts(2);
+		assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+		assertEquals(200, request("tenant2", new MockFilterChain()).getStatus());
+		assertEquals(200, request("random1", new MockFilterChain()).getStatus());
+		assertEquals(429, request("random2", new MockFilterChain()).getStatus());
+		assertEquals(429, request("tenant1", new MockFilterChain()).getStatus());
+	}
+
+	@Test
+	public void whenAsyncStartedThenConcurrencyShouldBeReleasedOnCompletion()
+			throws Exception {
+		filter.setMaxConcurrentRequests(1);
+		HttpServletRequest async = mock(HttpServletRequest.class);
+		AsyncContext asyncContext = mock(AsyncContext.class);
+		when(async.isAsyncStarted()).thenReturn(true);
+		when(async.getAsyncContext()).thenReturn(asyncContext);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ContextHolder.setContext("tenant1");
+		try {
+			filter.doFilter(async, response, new MockFilterChain());
+		} finally {
+			ContextHolder.clear();
+		}
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		// Still in flight until the async request completes
+		assertEquals(429, request("tenant1", new MockFilterChain()).getStatus());
+		listener.getValue().onComplete(new AsyncEvent(asyncContext));
+		listener.getValue().onComplete(new AsyncEvent(asyncContext));
+		assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+		assertEquals(200, request("tenant1", new MockFilterChain()).getStatus());
+	}
+
+	@Test
+	public void whenNoContextThenRequestShouldNotBeLimited() throws Exception {
+		filter.setRequestsPerSecond(1);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(200, request(null, new MockFilterChain()).getStatus());
+		}
+	}
+
+	private MockHttpServletResponse request(String context, FilterChain chain)
+			throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ContextHolder.setContext(context);
+		try {
+			filter.doFilter(new MockHttpServletRequest(), response, chain);
+		} finally {
+			ContextHolder.clear();
+		}
+		return response;
+	}
+}
@@ -73,4 +73,12 @@ public class ContextInterceptorTest {
 		assertNull(ContextHolder.getContext());
 	}
 
+	@Test
+	public void whenConcurrentHandlingStartedThenTheContextShouldBeNull()
+			throws Exception {
+		when(repository.getContext(request, response)).thenReturn("test");
+		interceptor.preHandle(request, response, null);
+		interceptor.afterConcurrentHandlingStarted(request, response, null);
+		assertNull(ContextHolder.getContext());
+	}
 }